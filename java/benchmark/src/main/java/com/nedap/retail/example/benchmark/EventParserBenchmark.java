@@ -0,0 +1,51 @@
+package com.nedap.retail.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.example.websocket.client.MessageDispatcher;
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Decoding of event frames, by the API library directly and through {@link MessageDispatcher} as the listener does.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventParserBenchmark {
+
+    @Param
+    private Payloads.Corpus corpus;
+
+    private String[] frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        frames = Payloads.events(corpus);
+    }
+
+    private String nextFrame() {
+        final String frame = frames[next];
+        next = (next + 1) % frames.length;
+        return frame;
+    }
+
+    @Benchmark
+    public Event parseEvent() {
+        return MessageParser.parseEvent(nextFrame());
+    }
+
+    @Benchmark
+    public Event dispatch() throws MessageParsingException {
+        final String frame = nextFrame();
+        final MessageDispatcher.Header header = MessageDispatcher.classify(frame);
+        return MessageDispatcher.decodeEvent(frame, header.getEventType());
+    }
+}
@@ -0,0 +1,77 @@
+package com.nedap.retail.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.example.websocket.client.EventHandlerRegistry;
+import com.nedap.retail.example.websocket.client.MessageDispatcher;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Delivery of event frames to several consumers of decoded events: each decoding the frame itself, as string
+ * listeners do, against the frame being decoded once by {@link EventHandlerRegistry}. The registry is also measured
+ * with handlers for another type only, in which case frames are not decoded at all.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandlerRegistryBenchmark {
+
+    @Param({ "RFID_OBSERVATION_50", "IR_DIRECTION" })
+    private Payloads.Corpus corpus;
+
+    @Param({ "1", "4" })
+    private int consumers;
+
+    private String[] frames;
+    private int next;
+    private Blackhole blackhole;
+    private EventHandlerRegistry registry;
+    private EventHandlerRegistry otherTypeRegistry;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+        frames = Payloads.events(corpus);
+        final EventType type = corpus == Payloads.Corpus.IR_DIRECTION ? EventType.IR_DIRECTION
+                : EventType.RFID_OBSERVATION;
+        registry = new EventHandlerRegistry();
+        otherTypeRegistry = new EventHandlerRegistry();
+        for (int i = 0; i < consumers; i++) {
+            registry.on(type, Event.class, blackhole::consume);
+            otherTypeRegistry.on(EventType.RFID_MOVE, Event.class, blackhole::consume);
+        }
+    }
+
+    private String nextFrame() {
+        final String frame = frames[next];
+        next = (next + 1) % frames.length;
+        return frame;
+    }
+
+    @Benchmark
+    public void decodePerConsumer() throws MessageParsingException {
+        final String frame = nextFrame();
+        for (int i = 0; i < consumers; i++) {
+            final MessageDispatcher.Header header = MessageDispatcher.classify(frame);
+            blackhole.consume(MessageDispatcher.decodeEvent(frame, header.getEventType()));
+        }
+    }
+
+    @Benchmark
+    public void registry() throws MessageParsingException {
+        registry.dispatch(nextFrame());
+    }
+
+    @Benchmark
+    public void registryOtherType() throws MessageParsingException {
+        otherTypeRegistry.dispatch(nextFrame());
+    }
+}
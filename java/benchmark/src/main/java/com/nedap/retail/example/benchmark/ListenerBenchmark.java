@@ -0,0 +1,70 @@
+package com.nedap.retail.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nedap.retail.example.rfid.EpcDeduplicator;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.example.websocket.client.RenosApiListener;
+import com.nedap.retail.example.websocket.client.RenosWebSocketClient;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Handling of event frames by {@link RenosApiListener} end to end, from the frame as received up to the hand-over to
+ * a sink. The sink consumes the events, so that neither logging nor I/O is measured.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerBenchmark {
+
+    @Param
+    private Payloads.Corpus corpus;
+
+    @Param({ "false", "true" })
+    private boolean deduplicate;
+
+    private String[] frames;
+    private int next;
+    private RenosApiListener listener;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        frames = Payloads.events(corpus);
+        listener = new RenosApiListener(new RenosWebSocketClient("http://localhost"));
+        listener.addSink(new BlackholeSink(blackhole));
+        if (deduplicate) {
+            // the corpus is cycled, so most EPCs are suppressed after the first round
+            listener.setDeduplicator(new EpcDeduplicator(TimeUnit.SECONDS.toMillis(5)));
+        }
+    }
+
+    @Benchmark
+    public void onMessage() {
+        listener.onMessage(frames[next]);
+        next = (next + 1) % frames.length;
+    }
+
+    private static final class BlackholeSink implements EventSink {
+
+        private final Blackhole blackhole;
+
+        BlackholeSink(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void accept(final String device, final Event event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.nedap.retail.example.benchmark;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.nedap.retail.renos.api.v2.rest.RestMessageParser;
+import com.nedap.retail.renos.api.v2.rest.message.GroupInfo;
+import com.nedap.retail.renos.api.v2.rest.message.SystemInfo;
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+
+/**
+ * Corpora of frames as sent by a device. Every corpus holds several distinct frames, generated from a fixed seed so
+ * that runs are comparable, and serialized with the API library itself so that they match the wire format.
+ */
+public final class Payloads {
+
+    /** Number of distinct frames in a corpus, cycled through by the benchmarks. */
+    public static final int CORPUS_SIZE = 64;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    private static final OffsetDateTime START = OffsetDateTime.of(2022, 6, 1, 9, 0, 0, 0, ZoneOffset.ofHours(2));
+    private static final String[] GROUPS = { "7b0c6a3e-2d5f-4f8e-9a61-0c3c2f1b7d42",
+            "d1e9f0a4-5b6c-4e2d-8f3a-9b7c6d5e4f30" };
+
+    /**
+     * Kinds of event frames.
+     */
+    public enum Corpus {
+        RFID_OBSERVATION_1,
+        RFID_OBSERVATION_50,
+        RFID_OBSERVATION_500,
+        RFID_ALARM,
+        IR_DIRECTION
+    }
+
+    private Payloads() {
+    }
+
+    /**
+     * @return {@link #CORPUS_SIZE} distinct frames of the given kind
+     */
+    public static String[] events(final Corpus corpus) {
+        final Random random = new Random(corpus.ordinal());
+        final String[] frames = new String[CORPUS_SIZE];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = MessageParser.toJson(event(corpus, i, random));
+        }
+        return frames;
+    }
+
+    private static Event event(final Corpus corpus, final int sequence, final Random random) {
+        final String id = Long.toString(1000000L + sequence);
+        final OffsetDateTime time = START.plusNanos(sequence * 250000000L);
+        switch (corpus) {
+            case RFID_OBSERVATION_1:
+                return new RfidObservationEvent(id, format(time), epcs(1, time, random));
+            case RFID_OBSERVATION_50:
+                return new RfidObservationEvent(id, format(time), epcs(50, time, random));
+            case RFID_OBSERVATION_500:
+                return new RfidObservationEvent(id, format(time), epcs(500, time, random));
+            case RFID_ALARM:
+                final RfidAlarmEvent alarm = new RfidAlarmEvent();
+                alarm.setType(EventType.RFID_ALARM);
+                alarm.setId(id);
+                alarm.setTime(format(time));
+                alarm.setEpc(epc(random));
+                alarm.setGroup(GROUPS[sequence % GROUPS.length]);
+                alarm.setUnits(Arrays.asList(1, 2));
+                alarm.setAisle(1);
+                alarm.setDirection(random.nextBoolean() ? Event.Direction.OUT : Event.Direction.IN);
+                return alarm;
+            case IR_DIRECTION:
+                return new IrDirectionEvent(id, format(time), GROUPS[sequence % GROUPS.length], Arrays.asList(1, 2),
+                        1, random.nextBoolean() ? Event.Direction.IN : Event.Direction.OUT);
+            default:
+                throw new IllegalArgumentException("Unknown corpus " + corpus);
+        }
+    }
+
+    private static List<Epc> epcs(final int count, final OffsetDateTime eventTime, final Random random) {
+        final List<Epc> epcs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final OffsetDateTime time = eventTime.minusNanos(random.nextInt(1000) * 1000000L);
+            final Epc.EasStatus status = random.nextInt(10) == 0 ? Epc.EasStatus.UNSOLD : Epc.EasStatus.SOLD;
+            epcs.add(new Epc(epc(random), format(time), status, GROUPS[random.nextInt(GROUPS.length)],
+                    Arrays.asList(1 + random.nextInt(4)), 1 + random.nextInt(2)));
+        }
+        return epcs;
+    }
+
+    /**
+     * An SGTIN-96 with a fixed header, company prefix and item reference, and a random serial, as found on the
+     * articles of a single store.
+     */
+    private static String epc(final Random random) {
+        final long serial = random.nextLong() & 0xFFFFFFFFFL;
+        return String.format("3034257BF7194E4%09X", serial);
+    }
+
+    /**
+     * @return times as in consecutive EPCs, a few milliseconds apart
+     */
+    public static String[] times(final int count) {
+        final Random random = new Random(count);
+        final String[] times = new String[count];
+        OffsetDateTime time = START;
+        for (int i = 0; i < times.length; i++) {
+            time = time.plusNanos(random.nextInt(20) * 1000000L);
+            times[i] = format(time);
+        }
+        return times;
+    }
+
+    private static String format(final OffsetDateTime time) {
+        return TIME_FORMAT.format(time);
+    }
+
+    /**
+     * @return an error response to a malformed request
+     */
+    public static String errorResponse() {
+        return MessageParser.toJson(new Response(Type.UNKNOWN, 400, "Request could not be parsed"));
+    }
+
+    /**
+     * @return group info of a store with two entrances
+     */
+    public static String groupInfo() {
+        final List<GroupInfo.Group> groups = new ArrayList<>();
+        for (int g = 0; g < GROUPS.length; g++) {
+            final List<GroupInfo.Unit> units = new ArrayList<>();
+            final List<GroupInfo.Aisle> aisles = new ArrayList<>();
+            for (int u = 1; u <= 4; u++) {
+                units.add(new GroupInfo.Unit(g * 10 + u, "Pedestal " + u));
+            }
+            for (int a = 1; a <= 3; a++) {
+                aisles.add(new GroupInfo.Aisle(a, Arrays.asList(g * 10 + a, g * 10 + a + 1)));
+            }
+            groups.add(new GroupInfo.Group(GROUPS[g], "Entrance " + (g + 1), units, aisles));
+        }
+        return RestMessageParser.toJson(new GroupInfo(groups));
+    }
+
+    /**
+     * @return system info of a device
+     */
+    public static String systemInfo() {
+        return RestMessageParser.toJson(new SystemInfo("0123456789", "2.31.0", "leader", format(START)));
+    }
+}
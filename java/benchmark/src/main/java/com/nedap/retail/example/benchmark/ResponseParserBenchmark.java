@@ -0,0 +1,49 @@
+package com.nedap.retail.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nedap.retail.renos.api.v2.rest.RestMessageParser;
+import com.nedap.retail.renos.api.v2.rest.message.GroupInfo;
+import com.nedap.retail.renos.api.v2.rest.message.SystemInfo;
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.Response;
+
+/**
+ * Decoding of WebSocket responses and of REST response bodies.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParserBenchmark {
+
+    private String response;
+    private String groupInfo;
+    private String systemInfo;
+
+    @Setup
+    public void setUp() {
+        response = Payloads.errorResponse();
+        groupInfo = Payloads.groupInfo();
+        systemInfo = Payloads.systemInfo();
+    }
+
+    @Benchmark
+    public Response parseResponse() {
+        return MessageParser.parseResponse(response);
+    }
+
+    @Benchmark
+    public GroupInfo parseGroupInfo() {
+        return RestMessageParser.parse(groupInfo, GroupInfo.class);
+    }
+
+    @Benchmark
+    public SystemInfo parseSystemInfo() {
+        return RestMessageParser.parse(systemInfo, SystemInfo.class);
+    }
+}
@@ -0,0 +1,53 @@
+package com.nedap.retail.example.benchmark;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+
+/**
+ * Decoding of EPC times to epoch millis: with the java.time parsers against {@link TimestampDecoder}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+
+    private final TimestampDecoder decoder = new TimestampDecoder();
+
+    private String[] times;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        times = Payloads.times(Payloads.CORPUS_SIZE * 8);
+    }
+
+    private String nextTime() {
+        final String time = times[next];
+        next = (next + 1) % times.length;
+        return time;
+    }
+
+    @Benchmark
+    public long offsetDateTimeParse() {
+        return OffsetDateTime.parse(nextTime()).toInstant().toEpochMilli();
+    }
+
+    @Benchmark
+    public long isoFormatter() {
+        return Instant.from(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(nextTime())).toEpochMilli();
+    }
+
+    @Benchmark
+    public long decoder() {
+        return decoder.toEpochMillis(nextTime());
+    }
+}
@@ -0,0 +1,106 @@
+package com.nedap.retail.example.simulator;
+
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a Renos device on the local machine: the events WebSocket at {@code /api/v2/events} and the REST
+ * endpoints, with generated events and injected faults, for load testing clients without real devices.
+ */
+public class DeviceSimulator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceSimulator.class);
+
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private final SimulatorConfig config;
+    private final EventHub hub;
+    private final FaultInjector faults;
+    private final EventGenerator generator;
+    private final ScheduledExecutorService scheduler;
+    private final Server server;
+
+    public DeviceSimulator(final SimulatorConfig config) {
+        this.config = config;
+        this.hub = new EventHub(config.getHistorySize());
+        this.faults = new FaultInjector(config);
+        this.generator = new EventGenerator(hub, faults, config);
+        this.scheduler = Executors.newScheduledThreadPool(2);
+        this.server = new Server(config.getPort());
+
+        final ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath("/api/v2");
+        context.addServlet(new ServletHolder(new WebSocketServlet() {
+            @Override
+            public void configure(final WebSocketServletFactory factory) {
+                factory.getPolicy().setMaxTextMessageSize(MAX_FRAME_SIZE);
+                factory.setCreator((request, response) -> {
+                    if (!config.isDeflate()) {
+                        // negotiate no extensions at all, so that an offer of permessage-deflate is declined
+                        response.setExtensions(Collections.emptyList());
+                    }
+                    return new EventsSocket(hub, faults, config);
+                });
+            }
+        }), "/events");
+        context.addServlet(new ServletHolder(new RestServlet(faults, config)), "/*");
+        server.setHandler(context);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final SimulatorConfig config;
+        try {
+            config = SimulatorConfig.parse(args);
+        } catch (final IllegalArgumentException e) {
+            LOG.info("{}\n{}", e.getMessage(), SimulatorConfig.usage());
+            System.exit(1);
+            return;
+        }
+
+        final DeviceSimulator simulator = new DeviceSimulator(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+        simulator.start();
+        simulator.join();
+    }
+
+    public void start() throws Exception {
+        server.start();
+        generator.start(scheduler);
+        faults.start(hub, scheduler);
+        scheduler.scheduleAtFixedRate(this::report, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        LOG.info("Simulating a device at http://localhost:{}, generating {} events per second", config.getPort(),
+                config.getEventRate());
+    }
+
+    public void join() throws InterruptedException {
+        server.join();
+    }
+
+    public void stop() {
+        generator.stop();
+        scheduler.shutdownNow();
+        try {
+            server.stop();
+        } catch (final Exception e) {
+            LOG.warn("Could not stop server", e);
+        }
+    }
+
+    private void report() {
+        LOG.info("Generated {} events with {} EPCs, {} subscribers, {} malformed frames, {} dropped connections",
+                generator.getGeneratedEvents(), generator.getGeneratedEpcs(), hub.getSubscriberCount(),
+                faults.getMalformedFrames(), faults.getDroppedConnections());
+    }
+}
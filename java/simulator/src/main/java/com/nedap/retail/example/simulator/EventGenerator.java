@@ -0,0 +1,193 @@
+package com.nedap.retail.example.simulator;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+
+/**
+ * Generates events of a weighted mix of types at a steady rate and publishes them to the hub. Events are generated
+ * in ticks; every tick generates the events due since the previous one, so the rate holds when ticks are late.
+ */
+public class EventGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventGenerator.class);
+
+    private static final long TICK_MILLIS = 10;
+    /** Events of at most this many seconds are caught up after a stall. */
+    private static final double MAX_BACKLOG_SECONDS = 1;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
+            .withZone(ZoneId.systemDefault());
+
+    static final String[] GROUPS = { "7b0c6a3e-2d5f-4f8e-9a61-0c3c2f1b7d42", "d1e9f0a4-5b6c-4e2d-8f3a-9b7c6d5e4f30" };
+    static final int UNITS_PER_GROUP = 4;
+
+    private final EventHub hub;
+    private final FaultInjector faults;
+    private final double eventsPerNano;
+    private final int epcsPerEvent;
+    private final EventType[] types;
+    private final int[] cumulativeWeights;
+
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final AtomicLong generatedEvents = new AtomicLong();
+    private final AtomicLong generatedEpcs = new AtomicLong();
+
+    private ScheduledFuture<?> tickFuture;
+    private long lastTick;
+    private double due;
+
+    public EventGenerator(final EventHub hub, final FaultInjector faults, final SimulatorConfig config) {
+        this.hub = hub;
+        this.faults = faults;
+        this.eventsPerNano = config.getEventRate() / TimeUnit.SECONDS.toNanos(1);
+        this.epcsPerEvent = config.getEpcsPerEvent();
+
+        final Map<EventType, Integer> mix = config.getMix();
+        types = mix.keySet().toArray(new EventType[0]);
+        cumulativeWeights = new int[types.length];
+        int total = 0;
+        for (int i = 0; i < types.length; i++) {
+            total += mix.get(types[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public synchronized void start(final ScheduledExecutorService scheduler) {
+        lastTick = System.nanoTime();
+        tickFuture = scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            final long now = System.nanoTime();
+            due = Math.min(due + (now - lastTick) * eventsPerNano, MAX_BACKLOG_SECONDS * eventsPerNano * 1e9);
+            lastTick = now;
+            final long nowMillis = System.currentTimeMillis();
+            while (due >= 1) {
+                due--;
+                publish(generate(pickType(), nowMillis), nowMillis);
+            }
+        } catch (final RuntimeException e) {
+            LOG.error("There was an error while generating events", e);
+        }
+    }
+
+    private void publish(final Event event, final long millis) {
+        generatedEvents.incrementAndGet();
+        hub.publish(event.getType(), millis, faults.corrupt(MessageParser.toJson(event)));
+    }
+
+    private EventType pickType() {
+        final int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return types[i];
+            }
+        }
+        return types[types.length - 1];
+    }
+
+    private Event generate(final EventType type, final long millis) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String id = Long.toString(sequence.incrementAndGet());
+        final String time = TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+        final int groupIndex = random.nextInt(GROUPS.length);
+        final String group = GROUPS[groupIndex];
+        final int aisle = 1 + random.nextInt(UNITS_PER_GROUP - 1);
+        final int unit = unitId(groupIndex, aisle + random.nextInt(2));
+        final Event.Direction direction = random.nextBoolean() ? Event.Direction.IN : Event.Direction.OUT;
+
+        switch (type) {
+            case RFID_OBSERVATION:
+                return new RfidObservationEvent(id, time, epcs(time, group, groupIndex, aisle));
+            case RFID_MOVE:
+                final RfidMoveEvent move = new RfidMoveEvent(id, time, direction, epcs(time, group, groupIndex, aisle));
+                move.setGroup(group);
+                move.setAisle(aisle);
+                return move;
+            case RFID_ALARM:
+                final RfidAlarmEvent alarm = new RfidAlarmEvent();
+                alarm.setId(id);
+                alarm.setTime(time);
+                alarm.setEpc(epc(random));
+                alarm.setGroup(group);
+                alarm.setUnits(Arrays.asList(unitId(groupIndex, aisle), unitId(groupIndex, aisle + 1)));
+                alarm.setAisle(aisle);
+                alarm.setDirection(direction);
+                return alarm;
+            case IR_DIRECTION:
+                return new IrDirectionEvent(id, time, group,
+                        Arrays.asList(unitId(groupIndex, aisle), unitId(groupIndex, aisle + 1)), aisle, direction);
+            case RF_ALARM:
+                return new RfAlarmEvent(id, time, group, unit, direction);
+            case RF_JAMMER:
+                return new RfJammerEvent(id, time, group, unit, random.nextBoolean());
+            case METAL_ALARM:
+                return new MetalAlarmEvent(id, time, group, unit);
+            case MAGNET_OBSERVATION:
+                return new MagnetObservationEvent(id, time, group, unit);
+            case TROLLEY_OBSERVATION:
+                return new TrolleyObservationEvent(id, time, group, unit);
+            case INPUT_OBSERVATION:
+                return new InputObservationEvent(id, time, group, unit, InputObservationEvent.Source.KEY_SWITCH,
+                        random.nextBoolean());
+            case SD_LABEL_DETECT:
+                return new SdLabelDetectEvent(id, time, group, unit, random.nextInt(256));
+            default:
+                throw new IllegalArgumentException("Unsupported event type " + type);
+        }
+    }
+
+    private List<Epc> epcs(final String time, final String group, final int groupIndex, final int aisle) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<Epc> epcs = new ArrayList<>(epcsPerEvent);
+        for (int i = 0; i < epcsPerEvent; i++) {
+            final Epc.EasStatus status = random.nextInt(10) == 0 ? Epc.EasStatus.UNSOLD : Epc.EasStatus.SOLD;
+            epcs.add(new Epc(epc(random), time, status, group,
+                    Arrays.asList(unitId(groupIndex, aisle + random.nextInt(2))), aisle));
+        }
+        generatedEpcs.addAndGet(epcsPerEvent);
+        return epcs;
+    }
+
+    /**
+     * An SGTIN-96 of one of a thousand articles, with a serial out of a million, so that EPCs recur as in a store.
+     */
+    private static String epc(final ThreadLocalRandom random) {
+        return String.format("3034257BF7%05X%09X", random.nextInt(1000), random.nextInt(1000000));
+    }
+
+    static int unitId(final int groupIndex, final int unit) {
+        return groupIndex * 10 + unit;
+    }
+
+    public long getGeneratedEvents() {
+        return generatedEvents.get();
+    }
+
+    public long getGeneratedEpcs() {
+        return generatedEpcs.get();
+    }
+}
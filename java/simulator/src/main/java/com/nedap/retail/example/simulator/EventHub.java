@@ -0,0 +1,92 @@
+package com.nedap.retail.example.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Keeps the recent events for {@code include_events_since} and hands every new event to the subscribed sockets.
+ * Publishing and subscribing lock the hub, so that a subscriber receives the history and then every later event,
+ * each once. Sockets send asynchronously, so the lock is held only briefly.
+ */
+public class EventHub {
+
+    private final long[] times;
+    private final EventType[] types;
+    private final String[] frames;
+    private int head;
+    private int size;
+
+    private final List<EventsSocket> connected = new ArrayList<>();
+    private final List<EventsSocket> subscribers = new ArrayList<>();
+
+    /**
+     * @param historySize number of events kept for replay
+     */
+    public EventHub(final int historySize) {
+        times = new long[historySize];
+        types = new EventType[historySize];
+        frames = new String[historySize];
+    }
+
+    public synchronized void publish(final EventType type, final long millis, final String frame) {
+        if (frames.length > 0) {
+            final int index = (head + size) % frames.length;
+            times[index] = millis;
+            types[index] = type;
+            frames[index] = frame;
+            if (size < frames.length) {
+                size++;
+            } else {
+                head = (head + 1) % frames.length;
+            }
+        }
+        for (final EventsSocket subscriber : subscribers) {
+            subscriber.deliver(type, frame);
+        }
+    }
+
+    /**
+     * Sends the kept events since the given time to the socket, and every later event.
+     *
+     * @param socket socket to send to
+     * @param sinceMillis time of the oldest event to replay, or -1 to replay none
+     * @return number of events replayed
+     */
+    public synchronized int subscribe(final EventsSocket socket, final long sinceMillis) {
+        int replayed = 0;
+        if (sinceMillis >= 0) {
+            for (int i = 0; i < size; i++) {
+                final int index = (head + i) % frames.length;
+                if (times[index] >= sinceMillis && socket.deliver(types[index], frames[index])) {
+                    replayed++;
+                }
+            }
+        }
+        if (!subscribers.contains(socket)) {
+            subscribers.add(socket);
+        }
+        return replayed;
+    }
+
+    public synchronized void connect(final EventsSocket socket) {
+        connected.add(socket);
+    }
+
+    public synchronized void disconnect(final EventsSocket socket) {
+        connected.remove(socket);
+        subscribers.remove(socket);
+    }
+
+    /**
+     * @return the sockets connected now
+     */
+    public synchronized List<EventsSocket> getConnected() {
+        return new ArrayList<>(connected);
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+}
@@ -0,0 +1,195 @@
+package com.nedap.retail.example.simulator;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+
+/**
+ * One connection to {@code /api/v2/events}. Answers heartbeats, checks the token of {@code authenticate} requests and
+ * sends events of the subscribed types. Frames are sent asynchronously; when a client reads too slowly, frames beyond
+ * the configured number of pending ones are dropped, as a device would.
+ */
+public class EventsSocket extends WebSocketAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventsSocket.class);
+
+    private final EventHub hub;
+    private final FaultInjector faults;
+    private final String token;
+    private final int maxPendingFrames;
+
+    private volatile boolean authenticated;
+    private volatile Set<EventType> eventTypes = EnumSet.noneOf(EventType.class);
+
+    private final AtomicInteger pendingFrames = new AtomicInteger();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final WriteCallback sent = new WriteCallback() {
+        @Override
+        public void writeFailed(final Throwable x) {
+            pendingFrames.decrementAndGet();
+        }
+
+        @Override
+        public void writeSuccess() {
+            pendingFrames.decrementAndGet();
+        }
+    };
+
+    public EventsSocket(final EventHub hub, final FaultInjector faults, final SimulatorConfig config) {
+        this.hub = hub;
+        this.faults = faults;
+        this.token = config.getToken();
+        this.maxPendingFrames = config.getMaxPendingFrames();
+        this.authenticated = token == null;
+    }
+
+    @Override
+    public void onWebSocketConnect(final Session session) {
+        super.onWebSocketConnect(session);
+        LOG.info("Client connected from {}", session.getRemoteAddress());
+        hub.connect(this);
+    }
+
+    @Override
+    public void onWebSocketClose(final int statusCode, final String reason) {
+        hub.disconnect(this);
+        LOG.info("Client disconnected, {} frames dropped", droppedFrames.get());
+        super.onWebSocketClose(statusCode, reason);
+    }
+
+    @Override
+    public void onWebSocketError(final Throwable cause) {
+        LOG.debug("WebSocket error", cause);
+        hub.disconnect(this);
+    }
+
+    @Override
+    public void onWebSocketText(final String message) {
+        faults.delay();
+        final Request request;
+        try {
+            request = MessageParser.parseRequest(message);
+        } catch (final RuntimeException e) {
+            respond(Type.UNKNOWN, 400, "Request could not be parsed");
+            return;
+        }
+        if (request == null || request.getRequest() == null) {
+            respond(Type.UNKNOWN, 400, "Request could not be parsed");
+        } else if (request instanceof Heartbeat) {
+            respond(Type.HEARTBEAT, 200, "OK");
+        } else if (request instanceof Authenticate) {
+            authenticate((Authenticate) request);
+        } else if (request instanceof Subscribe) {
+            subscribe((Subscribe) request);
+        } else {
+            respond(Type.UNKNOWN, 400, "Unsupported request");
+        }
+    }
+
+    private void authenticate(final Authenticate authenticate) {
+        if (token == null || token.equals(authenticate.getToken())) {
+            authenticated = true;
+            respond(Type.AUTHENTICATE, 200, "Authenticated");
+        } else {
+            respond(Type.AUTHENTICATE, 401, "Invalid token");
+        }
+    }
+
+    private void subscribe(final Subscribe subscribe) {
+        if (!authenticated) {
+            respond(Type.SUBSCRIBE, 401, "Not authenticated");
+            return;
+        }
+        final long sinceMillis;
+        try {
+            sinceMillis = subscribe.getIncludeEventsSince() != null
+                    ? OffsetDateTime.parse(subscribe.getIncludeEventsSince()).toInstant().toEpochMilli() : -1;
+        } catch (final DateTimeParseException e) {
+            respond(Type.SUBSCRIBE, 400, "Invalid include_events_since");
+            return;
+        }
+
+        final Set<EventType> types = EnumSet.noneOf(EventType.class);
+        types.addAll(eventTypes);
+        final List<EventType> requested = subscribe.getEventTypes();
+        if (requested == null || requested.isEmpty()) {
+            types.addAll(EnumSet.allOf(EventType.class));
+        } else {
+            types.addAll(requested);
+        }
+        eventTypes = types;
+
+        respond(Type.SUBSCRIBE, 200, "Subscribed");
+        final int replayed = hub.subscribe(this, sinceMillis);
+        LOG.info("Client subscribed {} to {}, replayed {} events", subscribe.getReference(), requested, replayed);
+    }
+
+    /**
+     * Sends a response the way the API library writes it, so that clients built on the library can read it back.
+     */
+    private void respond(final Type response, final int code, final String message) {
+        send(MessageParser.toJson(new Response(response, code, message)));
+    }
+
+    /**
+     * Sends an event if the client subscribed to its type.
+     *
+     * @return true if the event was sent
+     */
+    boolean deliver(final EventType type, final String frame) {
+        if (!eventTypes.contains(type)) {
+            return false;
+        }
+        if (pendingFrames.get() >= maxPendingFrames) {
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+        return send(frame);
+    }
+
+    private boolean send(final String frame) {
+        if (!isConnected()) {
+            return false;
+        }
+        pendingFrames.incrementAndGet();
+        try {
+            getRemote().sendString(frame, sent);
+            return true;
+        } catch (final RuntimeException e) {
+            pendingFrames.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Drops the connection without a close handshake.
+     */
+    void drop() {
+        final Session session = getSession();
+        if (session != null) {
+            try {
+                session.disconnect();
+            } catch (final IOException e) {
+                LOG.debug("Could not drop connection", e);
+            }
+        }
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.nedap.retail.example.simulator;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Injects the faults of a misbehaving device or network: connections dropped without a close handshake, slow
+ * responses and malformed event frames.
+ */
+public class FaultInjector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FaultInjector.class);
+
+    private final long dropEveryMillis;
+    private final long slowMillis;
+    private final double malformedRatio;
+
+    private final AtomicLong droppedConnections = new AtomicLong();
+    private final AtomicLong malformedFrames = new AtomicLong();
+
+    public FaultInjector(final SimulatorConfig config) {
+        this.dropEveryMillis = config.getDropEveryMillis();
+        this.slowMillis = config.getSlowMillis();
+        this.malformedRatio = config.getMalformedRatio();
+    }
+
+    /**
+     * Starts dropping the connections of the hub periodically, if configured.
+     */
+    public void start(final EventHub hub, final ScheduledExecutorService scheduler) {
+        if (dropEveryMillis > 0) {
+            scheduler.scheduleWithFixedDelay(() -> dropConnections(hub), dropEveryMillis, dropEveryMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dropConnections(final EventHub hub) {
+        for (final EventsSocket socket : hub.getConnected()) {
+            socket.drop();
+            droppedConnections.incrementAndGet();
+        }
+        LOG.info("Dropped all connections");
+    }
+
+    /**
+     * Delays a response, if configured.
+     */
+    public void delay() {
+        if (slowMillis > 0) {
+            try {
+                Thread.sleep(slowMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param frame event frame to send
+     * @return the frame, or a malformed variant of it at the configured ratio
+     */
+    public String corrupt(final String frame) {
+        if (malformedRatio <= 0) {
+            return frame;
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() >= malformedRatio) {
+            return frame;
+        }
+        malformedFrames.incrementAndGet();
+        switch (random.nextInt(3)) {
+            case 0:
+                // cut off, as by a broken proxy
+                return frame.substring(0, frame.length() / 2);
+            case 1:
+                return frame.replaceFirst("\"event\":\"[a-z_]*\"", "\"event\":\"unknown_event\"");
+            default:
+                return "\u0000" + frame;
+        }
+    }
+
+    public long getDroppedConnections() {
+        return droppedConnections.get();
+    }
+
+    public long getMalformedFrames() {
+        return malformedFrames.get();
+    }
+}
@@ -0,0 +1,183 @@
+package com.nedap.retail.example.simulator;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.rest.RestMessageParser;
+import com.nedap.retail.renos.api.v2.rest.message.*;
+
+/**
+ * The REST endpoints of a device under {@code /api/v2}. Resources carry an ETag, so that conditional requests are
+ * answered with 304 Not Modified when nothing changed.
+ */
+public class RestServlet extends HttpServlet {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestServlet.class);
+
+    private static final String JSON = "application/json";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    private final FaultInjector faults;
+    private final String token;
+    private final String groupInfo;
+
+    private volatile Settings settings = new Settings(true, true, Settings.LightAndSoundStatus.ON,
+            Settings.LightAndSoundStatus.ON);
+    private final AtomicLong blinks = new AtomicLong();
+
+    public RestServlet(final FaultInjector faults, final SimulatorConfig config) {
+        this.faults = faults;
+        this.token = config.getToken();
+        this.groupInfo = RestMessageParser.toJson(buildGroupInfo());
+    }
+
+    private static GroupInfo buildGroupInfo() {
+        final List<GroupInfo.Group> groups = new ArrayList<>();
+        for (int g = 0; g < EventGenerator.GROUPS.length; g++) {
+            final List<GroupInfo.Unit> units = new ArrayList<>();
+            final List<GroupInfo.Aisle> aisles = new ArrayList<>();
+            for (int u = 1; u <= EventGenerator.UNITS_PER_GROUP; u++) {
+                units.add(new GroupInfo.Unit(EventGenerator.unitId(g, u), "Pedestal " + u));
+                if (u > 1) {
+                    aisles.add(new GroupInfo.Aisle(u - 1,
+                            Arrays.asList(EventGenerator.unitId(g, u - 1), EventGenerator.unitId(g, u))));
+                }
+            }
+            groups.add(new GroupInfo.Group(EventGenerator.GROUPS[g], "Entrance " + (g + 1), units, aisles));
+        }
+        return new GroupInfo(groups);
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        if (!prepare(request, response)) {
+            return;
+        }
+        switch (path(request)) {
+            case "/info":
+                writeJson(request, response, RestMessageParser.toJson(new SystemInfo("simulator", "2.0.0", "leader",
+                        TIME_FORMAT.format(OffsetDateTime.now()))));
+                break;
+            case "/group_info":
+                writeJson(request, response, groupInfo);
+                break;
+            case "/status":
+                writeJson(request, response, RestMessageParser.toJson(new SystemStatus(0, 0, 0, 0)));
+                break;
+            case "/settings":
+                writeJson(request, response, RestMessageParser.toJson(settings));
+                break;
+            case "/heartbeat":
+                response.setStatus(HttpServletResponse.SC_OK);
+                break;
+            default:
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    @Override
+    protected void doPut(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        if (!prepare(request, response)) {
+            return;
+        }
+        if ("/settings".equals(path(request))) {
+            final Settings updated = readJson(request, response, Settings.class);
+            if (updated != null) {
+                settings = updated;
+                LOG.info("Settings updated to {}", updated);
+                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+        } else {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        if (!prepare(request, response)) {
+            return;
+        }
+        if ("/blink".equals(path(request))) {
+            if (readJson(request, response, BlinkRequest.class) != null) {
+                blinks.incrementAndGet();
+                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+        } else {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    /**
+     * Delays the response if configured, and checks the token.
+     *
+     * @return true if the request may be handled
+     */
+    private boolean prepare(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        faults.delay();
+        if (token != null && !("Bearer " + token).equals(request.getHeader("Authorization"))) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return false;
+        }
+        return true;
+    }
+
+    private static String path(final HttpServletRequest request) {
+        return request.getPathInfo() != null ? request.getPathInfo() : "";
+    }
+
+    private static void writeJson(final HttpServletRequest request, final HttpServletResponse response,
+            final String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        final String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+        response.setHeader("ETag", etag);
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(JSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static <T extends RestObject> T readJson(final HttpServletRequest request,
+            final HttpServletResponse response, final Class<T> clazz) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        try (Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        }
+        try {
+            final T value = RestMessageParser.parse(sb.toString(), clazz);
+            if (value != null) {
+                return value;
+            }
+        } catch (final RuntimeException e) {
+            LOG.debug("Invalid request body", e);
+        }
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return null;
+    }
+
+    public long getBlinks() {
+        return blinks.get();
+    }
+}
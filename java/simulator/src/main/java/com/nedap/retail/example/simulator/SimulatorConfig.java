@@ -0,0 +1,178 @@
+package com.nedap.retail.example.simulator;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Settings of the simulator, parsed from command line options of the form {@code --name value}.
+ */
+public class SimulatorConfig {
+
+    private int port = 8081;
+    private String token;
+    private double eventRate = 10;
+    private int epcsPerEvent = 20;
+    private final Map<EventType, Integer> mix = new EnumMap<>(EventType.class);
+    private int historySize = 100000;
+    private int maxPendingFrames = 10000;
+    private long dropEveryMillis;
+    private long slowMillis;
+    private double malformedRatio;
+    private boolean deflate = true;
+
+    public SimulatorConfig() {
+        mix.put(EventType.RFID_OBSERVATION, 60);
+        mix.put(EventType.RFID_MOVE, 10);
+        mix.put(EventType.RFID_ALARM, 5);
+        mix.put(EventType.IR_DIRECTION, 25);
+    }
+
+    /**
+     * @param args command line options
+     * @return the settings
+     * @throws IllegalArgumentException if an option is unknown or its value invalid
+     */
+    public static SimulatorConfig parse(final String[] args) {
+        final SimulatorConfig config = new SimulatorConfig();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of option " + args[i]);
+            }
+            final String value = args[i + 1];
+            switch (args[i]) {
+                case "--port":
+                    config.port = Integer.parseInt(value);
+                    break;
+                case "--token":
+                    config.token = value;
+                    break;
+                case "--rate":
+                    config.eventRate = Double.parseDouble(value);
+                    break;
+                case "--epcs":
+                    config.epcsPerEvent = Integer.parseInt(value);
+                    break;
+                case "--mix":
+                    config.mix.clear();
+                    config.mix.putAll(parseMix(value));
+                    break;
+                case "--history":
+                    config.historySize = Integer.parseInt(value);
+                    break;
+                case "--max-pending":
+                    config.maxPendingFrames = Integer.parseInt(value);
+                    break;
+                case "--drop-every":
+                    config.dropEveryMillis = Long.parseLong(value) * 1000;
+                    break;
+                case "--slow":
+                    config.slowMillis = Long.parseLong(value);
+                    break;
+                case "--malformed":
+                    config.malformedRatio = Double.parseDouble(value);
+                    break;
+                case "--deflate":
+                    config.deflate = parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (config.mix.isEmpty()) {
+            throw new IllegalArgumentException("The event mix is empty");
+        }
+        return config;
+    }
+
+    private static boolean parseBoolean(final String value) {
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new IllegalArgumentException("Invalid boolean " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Parses weights of event types, e.g. {@code rfid_observation=70,ir_direction=30}.
+     */
+    private static Map<EventType, Integer> parseMix(final String value) {
+        final Map<EventType, Integer> mix = new EnumMap<>(EventType.class);
+        for (final String part : value.split(",")) {
+            final String[] weight = part.split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid event weight " + part);
+            }
+            mix.put(EventType.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+    public static String usage() {
+        return "Options:\n"
+                + "  --port <port>          port to listen on, default 8081\n"
+                + "  --token <token>        token clients must authenticate with, default none\n"
+                + "  --rate <events/s>      events generated per second, default 10\n"
+                + "  --epcs <count>         EPCs per RFID observation or move event, default 20\n"
+                + "  --mix <type=weight,..> weights of event types, default "
+                + "rfid_observation=60,rfid_move=10,rfid_alarm=5,ir_direction=25\n"
+                + "  --history <events>     events kept for include_events_since, default 100000\n"
+                + "  --max-pending <frames> frames queued per client before frames are dropped, default 10000\n"
+                + "  --drop-every <s>       drop all connections every number of seconds, default never\n"
+                + "  --slow <ms>            delay every response, default 0\n"
+                + "  --malformed <ratio>    fraction of event frames sent malformed, default 0\n"
+                + "  --deflate <bool>       accept permessage-deflate compression, default true";
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return token clients must present, or null if clients need not authenticate
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public double getEventRate() {
+        return eventRate;
+    }
+
+    public int getEpcsPerEvent() {
+        return epcsPerEvent;
+    }
+
+    public Map<EventType, Integer> getMix() {
+        return Collections.unmodifiableMap(mix);
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public int getMaxPendingFrames() {
+        return maxPendingFrames;
+    }
+
+    public long getDropEveryMillis() {
+        return dropEveryMillis;
+    }
+
+    public long getSlowMillis() {
+        return slowMillis;
+    }
+
+    public double getMalformedRatio() {
+        return malformedRatio;
+    }
+
+    /**
+     * @return true if clients may negotiate permessage-deflate
+     */
+    public boolean isDeflate() {
+        return deflate;
+    }
+}
@@ -6,15 +6,28 @@ import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.management.JMException;
+
+import com.nedap.retail.example.analytics.TrafficAggregator;
+import com.nedap.retail.example.metrics.ClientMetrics;
+import com.nedap.retail.example.metrics.MetricsHttpServer;
+import com.nedap.retail.example.metrics.MetricsMBean;
+import com.nedap.retail.example.metrics.TextMetricsWriter;
 import com.nedap.retail.example.rest.*;
+import com.nedap.retail.example.rollout.RolloutCli;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.nedap.retail.example.websocket.client.PerMessageDeflateOffer;
 import com.nedap.retail.example.websocket.client.RenosWebSocketClient;
 import com.nedap.retail.renos.api.v2.rest.message.*;
 import com.nedap.retail.renos.api.v2.rest.message.Settings.LightAndSoundStatus;
@@ -26,15 +39,31 @@ public class Application {
     private static final Logger LOG = LoggerFactory.getLogger(Application.class);
     private static final int LIGHT = 1;
     private static final int SOUND = 2;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 30000;
+    private static final int MAX_MISSED_HEARTBEATS = 3;
+    /** System property with the port to serve metrics as text on, if set. */
+    private static final String METRICS_PORT_PROPERTY = "metrics.port";
+    /** System property which, if true, offers permessage-deflate compression to the device. */
+    private static final String COMPRESSION_PROPERTY = "compression";
+    /** System property with the seconds between traffic counts logged instead of events, if set. */
+    private static final String TRAFFIC_PERIOD_PROPERTY = "traffic.period";
+    /** First argument which rolls settings or a blink request out to many devices, see {@link RolloutCli}. */
+    private static final String ROLLOUT_MODE = "rollout";
 
     private static RenosWebSocketClient client;
     private static ApiCaller api;
+    private static ClientMetrics metrics;
+    private static MetricsHttpServer metricsServer;
+    private static ScheduledExecutorService trafficScheduler;
     private static String BASE_URL;
 
     public static void main(final String[] args) {
         if (args.length == 0) {
             LOG.info("Please use URL of device as parameter, for example: http://localhost:8081");
             System.exit(0);
+        } else if (ROLLOUT_MODE.equals(args[0])) {
+            RolloutCli.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         } else {
             BASE_URL = trimTrailingSlash(args[0]);
         }
@@ -45,6 +74,12 @@ public class Application {
 
         LOG.info("Application starting...");
         client = new RenosWebSocketClient(BASE_URL);
+        client.enableSupervision(HEARTBEAT_INTERVAL_MILLIS, MAX_MISSED_HEARTBEATS);
+        if (Boolean.getBoolean(COMPRESSION_PROPERTY)) {
+            client.setCompression(PerMessageDeflateOffer.DEFAULT);
+        }
+        enableMetrics();
+        enableTraffic();
 
         try (BufferedReader inputBuffer = new BufferedReader(new InputStreamReader(System.in))) {
 
@@ -72,7 +107,67 @@ public class Application {
             LOG.error("An error has occurred, system will exit", e);
         } finally {
             client.finish();
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+            if (trafficScheduler != null) {
+                trafficScheduler.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Records metrics of the client and the API calls, and exposes them over JMX and, if the metrics.port system
+     * property is set, as text over HTTP.
+     */
+    private static void enableMetrics() {
+        metrics = new ClientMetrics();
+        client.setMetrics(metrics);
+        api.setMetrics(metrics);
+        try {
+            MetricsMBean.register(metrics, BASE_URL);
+        } catch (final JMException e) {
+            LOG.warn("Could not expose metrics over JMX, reason {}", e.getMessage());
+        }
+        final String port = System.getProperty(METRICS_PORT_PROPERTY);
+        if (port != null) {
+            try {
+                metricsServer = new MetricsHttpServer(metrics, Integer.parseInt(port));
+                metricsServer.start();
+            } catch (final IOException | NumberFormatException e) {
+                LOG.warn("Could not serve metrics on port {}, reason {}", port, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * If the traffic.period system property is set, counts the people passing from IR direction events and logs the
+     * counts periodically instead of every event.
+     */
+    private static void enableTraffic() {
+        final String period = System.getProperty(TRAFFIC_PERIOD_PROPERTY);
+        if (period == null) {
+            return;
         }
+        long periodMillis = 0;
+        try {
+            periodMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(period));
+        } catch (final NumberFormatException e) {
+            // invalid, as is a period that is not positive
+        }
+        if (periodMillis <= 0) {
+            LOG.warn("Invalid traffic period {}", period);
+            return;
+        }
+        trafficScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "traffic");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final TrafficAggregator traffic = new TrafficAggregator();
+        traffic.startPublishing(snapshot -> LOG.info("Traffic {}", snapshot.toJson()), trafficScheduler,
+                periodMillis);
+        client.addSink(traffic);
     }
 
     private static String trimTrailingSlash(final String baseUrl) {
@@ -95,6 +190,7 @@ public class Application {
         LOG.info("    r) reconnect WS to Renos");
         LOG.info("    d) disconnect WS to Renos");
         LOG.info("    e) subscribe to events from Renos");
+        LOG.info("    m) print metrics");
         LOG.info("Please enter your choice and press Enter, or just Enter to exit.");
         // print line
         LOG.info("------------------------------------------------------");
@@ -134,6 +230,9 @@ public class Application {
                 case 'd':
                     disconnectWSToRenos();
                     break;
+                case 'm':
+                    LOG.info(TextMetricsWriter.write(metrics));
+                    break;
                 case 'e':
                     subscribeToEvents(inputBuffer);
                     break;
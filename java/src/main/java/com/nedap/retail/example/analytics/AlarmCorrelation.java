@@ -0,0 +1,99 @@
+package com.nedap.retail.example.analytics;
+
+import com.google.gson.JsonObject;
+import com.nedap.retail.example.event.EventTimes;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.IrDirectionEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfidAlarmEvent;
+
+/**
+ * An RF or RFID alarm with the IR direction event at the same place closest to it in time, if there was one within the
+ * window of {@link AlarmCorrelator}.
+ */
+public final class AlarmCorrelation {
+
+    private final String device;
+    private final Event alarm;
+    private final long alarmTime;
+    private final IrDirectionEvent passage;
+    private final long passageTime;
+
+    AlarmCorrelation(final String device, final Event alarm, final long alarmTime, final IrDirectionEvent passage,
+            final long passageTime) {
+        this.device = device;
+        this.alarm = alarm;
+        this.alarmTime = alarmTime;
+        this.passage = passage;
+        this.passageTime = passageTime;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    /**
+     * @return the RF or RFID alarm event
+     */
+    public Event getAlarm() {
+        return alarm;
+    }
+
+    /**
+     * @return time of the alarm, in epoch millis
+     */
+    public long getAlarmTime() {
+        return alarmTime;
+    }
+
+    /**
+     * @return the IR direction event at the place of the alarm, or null if nobody passed within the window
+     */
+    public IrDirectionEvent getPassage() {
+        return passage;
+    }
+
+    /**
+     * @return true if an IR direction event was found
+     */
+    public boolean isMatched() {
+        return passage != null;
+    }
+
+    /**
+     * @return true if the person passed outwards, i.e. left the store
+     */
+    public boolean isExit() {
+        return passage != null && passage.getDirection() == Event.Direction.OUT;
+    }
+
+    /**
+     * @return time of the passage minus time of the alarm, or 0 if unmatched
+     */
+    public long getOffsetMillis() {
+        return passage != null ? passageTime - alarmTime : 0;
+    }
+
+    /**
+     * @return the correlation as JSON, with the ids of the events and the direction of the passage, if any
+     */
+    public String toJson() {
+        final JsonObject json = new JsonObject();
+        json.addProperty("device", device);
+        json.addProperty("group", alarm.getGroup());
+        // RF alarms carry no aisle, the passage does
+        json.addProperty("aisle", alarm.getAisle() != null || passage == null ? alarm.getAisle() : passage.getAisle());
+        json.addProperty("alarm", alarm.getType().name().toLowerCase());
+        json.addProperty("alarm_id", alarm.getId());
+        json.addProperty("time", EventTimes.format(alarmTime));
+        if (alarm instanceof RfidAlarmEvent) {
+            json.addProperty("epc", ((RfidAlarmEvent) alarm).getEpc());
+        }
+        if (passage != null) {
+            json.addProperty("passage_id", passage.getId());
+            json.addProperty("direction", passage.getDirection() != null
+                    ? passage.getDirection().name().toLowerCase() : null);
+            json.addProperty("offset_ms", getOffsetMillis());
+        }
+        return json.toString();
+    }
+}
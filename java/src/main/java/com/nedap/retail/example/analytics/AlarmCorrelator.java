@@ -0,0 +1,344 @@
+package com.nedap.retail.example.analytics;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.IrDirectionEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfAlarmEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfidAlarmEvent;
+
+/**
+ * Pairs every RF and RFID alarm with the IR direction event at the same place of the same device within a few seconds,
+ * which tells whether the person actually left the store. An alarm and a passage are at the same place if they are in
+ * the same group and either both carry the same aisle or, as RF alarms carry a unit but no aisle, they share a unit.
+ * Add it as a sink of the clients; correlations are handed to the listener as soon as they are known:
+ * <ul>
+ * <li>an alarm is paired with the passage closest in time among the passages already received, or else with the first
+ * passage within the window that is received later;</li>
+ * <li>an alarm without passage is reported unmatched once the window after it has passed.</li>
+ * </ul>
+ * Whether the window has passed is decided by a watermark per device: the newest event time received, advanced by the
+ * time since it was received, minus the allowed lateness. Events of every type advance it. Passages and alarms behind
+ * the watermark are dropped, so the state stays small; at most 256 of each are kept per group. Call
+ * {@link #startExpiring} to also report the unmatched alarms of devices which stopped sending events.
+ */
+public class AlarmCorrelator implements EventSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlarmCorrelator.class);
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5000;
+    public static final long DEFAULT_LATENESS_MILLIS = 2000;
+
+    private static final int MAX_PER_GROUP = 256;
+
+    /**
+     * Receives the correlations. Called on the thread that receives the events, so must return quickly.
+     */
+    public interface CorrelationListener {
+
+        void onCorrelation(AlarmCorrelation correlation);
+    }
+
+    private final long windowMillis;
+    private final long latenessMillis;
+    private final LongSupplier clock;
+    private final CorrelationListener listener;
+    private final Map<String, DeviceState> devices = new ConcurrentHashMap<>();
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder latePassages = new LongAdder();
+
+    private ScheduledFuture<?> expiryFuture;
+
+    public AlarmCorrelator(final CorrelationListener listener) {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_LATENESS_MILLIS, System::currentTimeMillis, listener);
+    }
+
+    /**
+     * @param windowMillis maximum time between an alarm and its passage, either way
+     * @param latenessMillis time events may arrive after newer events of the same device
+     * @param clock source of the current time in epoch millis
+     * @param listener receives the correlations
+     */
+    public AlarmCorrelator(final long windowMillis, final long latenessMillis, final LongSupplier clock,
+            final CorrelationListener listener) {
+        this.windowMillis = windowMillis;
+        this.latenessMillis = latenessMillis;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(final String device, final Event event) {
+        DeviceState state = devices.get(device);
+        if (state == null) {
+            state = devices.computeIfAbsent(device, DeviceState::new);
+        }
+        final List<AlarmCorrelation> correlations = new ArrayList<>(1);
+        synchronized (state) {
+            final long now = clock.getAsLong();
+            final long time = eventTime(event, state, now);
+            state.observe(time, now);
+            final long watermark = state.watermark(now);
+            if (event instanceof RfAlarmEvent || event instanceof RfidAlarmEvent) {
+                state.alarm(event, time, watermark, correlations);
+            } else if (event instanceof IrDirectionEvent) {
+                state.passage((IrDirectionEvent) event, time, watermark, correlations);
+            }
+            state.expire(watermark, correlations);
+        }
+        emit(correlations);
+    }
+
+    private long eventTime(final Event event, final DeviceState state, final long now) {
+        if (event.getTime() != null) {
+            try {
+                return timestamps.toEpochMillis(event.getTime());
+            } catch (final DateTimeParseException e) {
+                // estimate below
+            }
+        }
+        return state.estimatedTime(now);
+    }
+
+    /**
+     * Reports the unmatched alarms whose window has passed, also of devices which stopped sending events.
+     */
+    public void expire() {
+        final List<AlarmCorrelation> correlations = new ArrayList<>();
+        for (final DeviceState state : devices.values()) {
+            synchronized (state) {
+                state.expire(state.watermark(clock.getAsLong()), correlations);
+            }
+        }
+        emit(correlations);
+    }
+
+    private void emit(final List<AlarmCorrelation> correlations) {
+        for (final AlarmCorrelation correlation : correlations) {
+            if (correlation.isMatched()) {
+                matched.increment();
+            } else {
+                unmatched.increment();
+            }
+            try {
+                listener.onCorrelation(correlation);
+            } catch (final RuntimeException e) {
+                LOG.error("There was an error while handling an alarm correlation", e);
+            }
+        }
+    }
+
+    /**
+     * Calls {@link #expire()} periodically.
+     *
+     * @param scheduler scheduler to expire on
+     * @param periodMillis time between expiries
+     */
+    public synchronized void startExpiring(final ScheduledExecutorService scheduler, final long periodMillis) {
+        stopExpiring();
+        expiryFuture = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                expire();
+            } catch (final RuntimeException e) {
+                LOG.error("There was an error while expiring alarms", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopExpiring() {
+        if (expiryFuture != null) {
+            expiryFuture.cancel(false);
+            expiryFuture = null;
+        }
+    }
+
+    /**
+     * Stops expiring. Alarms still waiting for a passage are not reported.
+     */
+    @Override
+    public void close() {
+        stopExpiring();
+    }
+
+    /**
+     * @return number of alarms reported with a passage
+     */
+    public long getMatchedCount() {
+        return matched.sum();
+    }
+
+    /**
+     * @return number of alarms reported without passage
+     */
+    public long getUnmatchedCount() {
+        return unmatched.sum();
+    }
+
+    /**
+     * @return number of passages not kept because they were behind the watermark
+     */
+    public long getLatePassageCount() {
+        return latePassages.sum();
+    }
+
+    /**
+     * Alarms waiting for a passage and recent passages of a device, by group. Guarded by itself.
+     */
+    private final class DeviceState {
+
+        private final String device;
+        private final Map<String, GroupState> groups = new HashMap<>();
+
+        private long newestTime = Long.MIN_VALUE;
+        private long newestReceived;
+
+        DeviceState(final String device) {
+            this.device = device;
+        }
+
+        void observe(final long time, final long now) {
+            if (time > newestTime) {
+                newestTime = time;
+                newestReceived = now;
+            }
+        }
+
+        /**
+         * @return current time of the device, estimated from the newest event
+         */
+        long estimatedTime(final long now) {
+            return newestTime == Long.MIN_VALUE ? now : newestTime + Math.max(0, now - newestReceived);
+        }
+
+        long watermark(final long now) {
+            return estimatedTime(now) - latenessMillis;
+        }
+
+        void alarm(final Event alarm, final long time, final long watermark, final List<AlarmCorrelation> out) {
+            final GroupState group = group(alarm);
+            Timed<IrDirectionEvent> closest = null;
+            for (final Timed<IrDirectionEvent> passage : group.passages) {
+                final long distance = Math.abs(passage.time - time);
+                if (distance <= windowMillis && (closest == null || distance < Math.abs(closest.time - time))
+                        && samePlace(alarm, passage.event)) {
+                    closest = passage;
+                }
+            }
+            if (closest != null) {
+                out.add(new AlarmCorrelation(device, alarm, time, closest.event, closest.time));
+            } else if (time + windowMillis < watermark) {
+                out.add(new AlarmCorrelation(device, alarm, time, null, 0));
+            } else {
+                group.alarms.add(new Timed<>(alarm, time));
+                if (group.alarms.size() > MAX_PER_GROUP) {
+                    final Timed<Event> oldest = group.alarms.poll();
+                    out.add(new AlarmCorrelation(device, oldest.event, oldest.time, null, 0));
+                }
+            }
+        }
+
+        void passage(final IrDirectionEvent passage, final long time, final long watermark,
+                final List<AlarmCorrelation> out) {
+            final GroupState group = group(passage);
+            for (final Iterator<Timed<Event>> it = group.alarms.iterator(); it.hasNext();) {
+                final Timed<Event> alarm = it.next();
+                if (Math.abs(time - alarm.time) <= windowMillis && samePlace(alarm.event, passage)) {
+                    out.add(new AlarmCorrelation(device, alarm.event, alarm.time, passage, time));
+                    it.remove();
+                }
+            }
+            if (time + windowMillis < watermark) {
+                latePassages.increment();
+                return;
+            }
+            group.passages.add(new Timed<>(passage, time));
+            if (group.passages.size() > MAX_PER_GROUP) {
+                group.passages.poll();
+            }
+        }
+
+        private GroupState group(final Event event) {
+            return groups.computeIfAbsent(event.getGroup(), key -> new GroupState());
+        }
+
+        /**
+         * Drops passages and reports alarms whose window is behind the watermark.
+         */
+        void expire(final long watermark, final List<AlarmCorrelation> out) {
+            for (final Iterator<GroupState> states = groups.values().iterator(); states.hasNext();) {
+                final GroupState group = states.next();
+                group.passages.removeIf(passage -> passage.time + windowMillis < watermark);
+                for (final Iterator<Timed<Event>> it = group.alarms.iterator(); it.hasNext();) {
+                    final Timed<Event> alarm = it.next();
+                    if (alarm.time + windowMillis < watermark) {
+                        out.add(new AlarmCorrelation(device, alarm.event, alarm.time, null, 0));
+                        it.remove();
+                    }
+                }
+                if (group.alarms.isEmpty() && group.passages.isEmpty()) {
+                    states.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the alarm and the passage are in the same aisle, or share a unit if either lacks an aisle
+     */
+    private static boolean samePlace(final Event alarm, final IrDirectionEvent passage) {
+        if (alarm.getAisle() != null && passage.getAisle() != null) {
+            return alarm.getAisle().equals(passage.getAisle());
+        }
+        final List<Integer> alarmUnits = alarm.getUnits();
+        final List<Integer> passageUnits = passage.getUnits();
+        if (alarmUnits == null || passageUnits == null) {
+            return false;
+        }
+        for (final Integer unit : alarmUnits) {
+            if (unit != null && passageUnits.contains(unit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class GroupState {
+
+        private final ArrayDeque<Timed<Event>> alarms = new ArrayDeque<>();
+        private final ArrayDeque<Timed<IrDirectionEvent>> passages = new ArrayDeque<>();
+    }
+
+    /**
+     * An event with its time in epoch millis.
+     */
+    private static final class Timed<T extends Event> {
+
+        private final T event;
+        private final long time;
+
+        Timed(final T event, final long time) {
+            this.event = event;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.nedap.retail.example.analytics;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Counts the people passing every aisle from IR direction events, in rolling windows of a minute, fifteen minutes and
+ * an hour, so that aggregates can be published instead of every event. Add it as a sink of the clients; other events
+ * are ignored.
+ * <p>
+ * Passages are counted in the slice of time of the event, so that events received late or replayed after a reconnect
+ * count in the right window. Event times ahead of the clock count as now, and events older than the longest window are
+ * dropped.
+ */
+public class TrafficAggregator implements EventSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficAggregator.class);
+
+    /** Default length of a slice, the precision with which windows roll. */
+    public static final long DEFAULT_SLICE_MILLIS = 10000;
+
+    private static final Comparator<TrafficSnapshot.Entry> ORDER = Comparator
+            .comparing(TrafficSnapshot.Entry::getDevice, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TrafficSnapshot.Entry::getGroup, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TrafficSnapshot.Entry::getAisle, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * Receives the snapshots published.
+     */
+    public interface SnapshotListener {
+
+        void onSnapshot(TrafficSnapshot snapshot);
+    }
+
+    private final long sliceMillis;
+    private final LongSupplier clock;
+    private final Map<Key, TrafficCounter> counters = new ConcurrentHashMap<>();
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+
+    private final LongAdder counted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private ScheduledFuture<?> publishFuture;
+
+    public TrafficAggregator() {
+        this(DEFAULT_SLICE_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * @param sliceMillis length of a slice, which must divide a minute
+     * @param clock source of the current time in epoch millis
+     */
+    public TrafficAggregator(final long sliceMillis, final LongSupplier clock) {
+        if (sliceMillis <= 0 || TrafficWindow.ONE_MINUTE.getMillis() % sliceMillis != 0) {
+            throw new IllegalArgumentException("Slice of " + sliceMillis + " ms does not divide a minute");
+        }
+        this.sliceMillis = sliceMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public void accept(final String device, final Event event) {
+        if (event.getType() != EventType.IR_DIRECTION) {
+            return;
+        }
+        final long nowSlice = clock.getAsLong() / sliceMillis;
+        final long slice = Math.min(eventSlice(event, nowSlice), nowSlice);
+        final Key key = new Key(device, event.getGroup(), event.getAisle());
+        TrafficCounter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new TrafficCounter(slices(TrafficWindow.longest())));
+        }
+        if (slice > nowSlice - slices(TrafficWindow.longest()) && counter.record(slice, event.getDirection())) {
+            counted.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private long eventSlice(final Event event, final long nowSlice) {
+        if (event.getTime() == null) {
+            return nowSlice;
+        }
+        try {
+            return Math.floorDiv(timestamps.toEpochMillis(event.getTime()), sliceMillis);
+        } catch (final DateTimeParseException e) {
+            return nowSlice;
+        }
+    }
+
+    private int slices(final TrafficWindow window) {
+        return (int) (window.getMillis() / sliceMillis);
+    }
+
+    /**
+     * @return counts of every aisle and group with traffic in the longest window, up to now
+     */
+    public TrafficSnapshot snapshot() {
+        final long now = clock.getAsLong();
+        final long nowSlice = now / sliceMillis;
+        final List<TrafficSnapshot.Entry> aisles = new ArrayList<>(counters.size());
+        final Map<Key, long[]> groupCounts = new LinkedHashMap<>();
+        for (final Map.Entry<Key, TrafficCounter> entry : counters.entrySet()) {
+            final long[] counts = TrafficSnapshot.Entry.newCounts();
+            for (final TrafficWindow window : TrafficWindow.values()) {
+                entry.getValue().sum(nowSlice, slices(window), counts, TrafficSnapshot.Entry.offset(window));
+            }
+            if (isIdle(counts)) {
+                continue;
+            }
+            final Key key = entry.getKey();
+            aisles.add(new TrafficSnapshot.Entry(key.device, key.group, key.aisle, counts));
+            final long[] group = groupCounts.computeIfAbsent(new Key(key.device, key.group, null),
+                    groupKey -> TrafficSnapshot.Entry.newCounts());
+            for (int i = 0; i < counts.length; i++) {
+                group[i] += counts[i];
+            }
+        }
+
+        final List<TrafficSnapshot.Entry> groups = new ArrayList<>(groupCounts.size());
+        for (final Map.Entry<Key, long[]> entry : groupCounts.entrySet()) {
+            groups.add(new TrafficSnapshot.Entry(entry.getKey().device, entry.getKey().group, null, entry.getValue()));
+        }
+        aisles.sort(ORDER);
+        groups.sort(ORDER);
+        return new TrafficSnapshot(now, aisles, groups);
+    }
+
+    /**
+     * @return true if nothing passed in the longest window
+     */
+    private static boolean isIdle(final long[] counts) {
+        final int offset = TrafficSnapshot.Entry.offset(TrafficWindow.longest());
+        for (int kind = 0; kind < TrafficCounter.KINDS; kind++) {
+            if (counts[offset + kind] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a snapshot periodically, at multiples of the period since the epoch, e.g. on the minute.
+     *
+     * @param listener receives the snapshots, on the scheduler
+     * @param scheduler scheduler to publish on
+     * @param periodMillis time between snapshots
+     */
+    public synchronized void startPublishing(final SnapshotListener listener,
+            final ScheduledExecutorService scheduler, final long periodMillis) {
+        stopPublishing();
+        final long delay = periodMillis - Math.floorMod(clock.getAsLong(), periodMillis);
+        publishFuture = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                listener.onSnapshot(snapshot());
+            } catch (final RuntimeException e) {
+                LOG.error("There was an error while publishing traffic", e);
+            }
+        }, delay, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPublishing() {
+        if (publishFuture != null) {
+            publishFuture.cancel(false);
+            publishFuture = null;
+        }
+    }
+
+    /**
+     * Stops publishing. The counts are kept.
+     */
+    @Override
+    public void close() {
+        stopPublishing();
+    }
+
+    /**
+     * @return number of passages counted
+     */
+    public long getCountedCount() {
+        return counted.sum();
+    }
+
+    /**
+     * @return number of passages dropped because they were older than the longest window
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Aisle of a device, or a group of a device when the aisle is null.
+     */
+    private static final class Key {
+
+        private final String device;
+        private final String group;
+        private final Integer aisle;
+
+        Key(final String device, final String group, final Integer aisle) {
+            this.device = device;
+            this.group = group;
+            this.aisle = aisle;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return Objects.equals(device, other.device) && Objects.equals(group, other.group)
+                    && Objects.equals(aisle, other.aisle);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Objects.hashCode(device);
+            hash = 31 * hash + Objects.hashCode(group);
+            return 31 * hash + Objects.hashCode(aisle);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.nedap.retail.example.analytics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * In, out and other counts of one aisle, in a ring of time slices. A slot is claimed by the newest slice that maps to
+ * it, which drops the counts of the slice an hour before; counting is lock-free and only allocates once per slice.
+ */
+final class TrafficCounter {
+
+    static final int IN = 0;
+    static final int OUT = 1;
+    static final int OTHER = 2;
+    static final int KINDS = 3;
+
+    private final AtomicReferenceArray<Slice> ring;
+
+    /**
+     * @param slices number of slices to keep, covering the longest window
+     */
+    TrafficCounter(final int slices) {
+        ring = new AtomicReferenceArray<>(slices);
+    }
+
+    /**
+     * @param slice index of the slice the passage took place in, epoch millis divided by the slice length
+     * @param direction direction of the passage, or null
+     * @return false if the slice was already dropped from the ring
+     */
+    boolean record(final long slice, final Event.Direction direction) {
+        final int position = position(slice);
+        while (true) {
+            final Slice current = ring.get(position);
+            if (current != null && current.index == slice) {
+                current.add(direction);
+                return true;
+            }
+            if (current != null && current.index > slice) {
+                return false;
+            }
+            final Slice fresh = new Slice(slice);
+            if (ring.compareAndSet(position, current, fresh)) {
+                fresh.add(direction);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of a window to an array of in, out and other counts.
+     *
+     * @param newestSlice last slice of the window
+     * @param slices number of slices in the window
+     * @param into receives the counts
+     * @param offset position in the array of the in count, followed by the out and other counts
+     */
+    void sum(final long newestSlice, final int slices, final long[] into, final int offset) {
+        for (long slice = newestSlice - slices + 1; slice <= newestSlice; slice++) {
+            final Slice current = ring.get(position(slice));
+            if (current != null && current.index == slice) {
+                into[offset + IN] += current.in.sum();
+                into[offset + OUT] += current.out.sum();
+                into[offset + OTHER] += current.other.sum();
+            }
+        }
+    }
+
+    private int position(final long slice) {
+        return (int) Math.floorMod(slice, (long) ring.length());
+    }
+
+    private static final class Slice {
+
+        private final long index;
+        private final LongAdder in = new LongAdder();
+        private final LongAdder out = new LongAdder();
+        private final LongAdder other = new LongAdder();
+
+        Slice(final long index) {
+            this.index = index;
+        }
+
+        void add(final Event.Direction direction) {
+            if (direction == Event.Direction.IN) {
+                in.increment();
+            } else if (direction == Event.Direction.OUT) {
+                out.increment();
+            } else {
+                other.increment();
+            }
+        }
+    }
+}
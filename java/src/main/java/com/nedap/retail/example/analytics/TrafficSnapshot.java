@@ -0,0 +1,148 @@
+package com.nedap.retail.example.analytics;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.nedap.retail.example.event.EventTimes;
+
+/**
+ * Traffic counts of every aisle and group with traffic in the last hour, in each {@link TrafficWindow} up to the
+ * time of the snapshot.
+ */
+public final class TrafficSnapshot {
+
+    private final long time;
+    private final List<Entry> aisles;
+    private final List<Entry> groups;
+
+    TrafficSnapshot(final long time, final List<Entry> aisles, final List<Entry> groups) {
+        this.time = time;
+        this.aisles = Collections.unmodifiableList(aisles);
+        this.groups = Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * @return end of the windows in epoch millis
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return counts per aisle; events without aisle are counted under a null aisle
+     */
+    public List<Entry> getAisles() {
+        return aisles;
+    }
+
+    /**
+     * @return counts per group, the sums of the counts of its aisles
+     */
+    public List<Entry> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the snapshot as JSON, with the in, out and other counts as arrays in the order of the windows
+     */
+    public String toJson() {
+        final JsonObject json = new JsonObject();
+        json.addProperty("time", EventTimes.format(time));
+        final JsonArray windows = new JsonArray();
+        for (final TrafficWindow window : TrafficWindow.values()) {
+            windows.add(window.getLabel());
+        }
+        json.add("windows", windows);
+        json.add("aisles", toJson(aisles, true));
+        json.add("groups", toJson(groups, false));
+        return json.toString();
+    }
+
+    private static JsonArray toJson(final List<Entry> entries, final boolean withAisle) {
+        final JsonArray array = new JsonArray();
+        for (final Entry entry : entries) {
+            final JsonObject json = new JsonObject();
+            json.addProperty("device", entry.device);
+            json.addProperty("group", entry.group);
+            if (withAisle) {
+                json.addProperty("aisle", entry.aisle);
+            }
+            json.add("in", counts(entry, TrafficCounter.IN));
+            json.add("out", counts(entry, TrafficCounter.OUT));
+            json.add("other", counts(entry, TrafficCounter.OTHER));
+            array.add(json);
+        }
+        return array;
+    }
+
+    private static JsonArray counts(final Entry entry, final int kind) {
+        final JsonArray counts = new JsonArray();
+        for (final TrafficWindow window : TrafficWindow.values()) {
+            counts.add(entry.count(window, kind));
+        }
+        return counts;
+    }
+
+    /**
+     * Counts of an aisle or group.
+     */
+    public static final class Entry {
+
+        private final String device;
+        private final String group;
+        private final Integer aisle;
+        /** In, out and other count of every window, in the order of the windows. */
+        private final long[] counts;
+
+        Entry(final String device, final String group, final Integer aisle, final long[] counts) {
+            this.device = device;
+            this.group = group;
+            this.aisle = aisle;
+            this.counts = counts;
+        }
+
+        static long[] newCounts() {
+            return new long[TrafficWindow.values().length * TrafficCounter.KINDS];
+        }
+
+        static int offset(final TrafficWindow window) {
+            return window.ordinal() * TrafficCounter.KINDS;
+        }
+
+        private long count(final TrafficWindow window, final int kind) {
+            return counts[offset(window) + kind];
+        }
+
+        public String getDevice() {
+            return device;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        /**
+         * @return id of the aisle, or null for a group or for events without aisle
+         */
+        public Integer getAisle() {
+            return aisle;
+        }
+
+        public long getIn(final TrafficWindow window) {
+            return count(window, TrafficCounter.IN);
+        }
+
+        public long getOut(final TrafficWindow window) {
+            return count(window, TrafficCounter.OUT);
+        }
+
+        /**
+         * @return passages with a direction other than in or out, such as A, B or unknown
+         */
+        public long getOther(final TrafficWindow window) {
+            return count(window, TrafficCounter.OTHER);
+        }
+    }
+}
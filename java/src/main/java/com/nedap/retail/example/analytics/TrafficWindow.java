@@ -0,0 +1,39 @@
+package com.nedap.retail.example.analytics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling windows over which traffic is counted, each ending at the time of the snapshot.
+ */
+public enum TrafficWindow {
+
+    ONE_MINUTE("1m", 1),
+    FIFTEEN_MINUTES("15m", 15),
+    ONE_HOUR("1h", 60);
+
+    private final String label;
+    private final long millis;
+
+    TrafficWindow(final String label, final int minutes) {
+        this.label = label;
+        this.millis = TimeUnit.MINUTES.toMillis(minutes);
+    }
+
+    /**
+     * @return short name of the window, e.g. 15m
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return the longest window
+     */
+    static TrafficWindow longest() {
+        return ONE_HOUR;
+    }
+}
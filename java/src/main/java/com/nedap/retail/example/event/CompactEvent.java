@@ -0,0 +1,478 @@
+package com.nedap.retail.example.event;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.nedap.retail.example.rfid.EpcCodec;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+
+/**
+ * Compact, immutable representation of an {@link Event} for keeping large amounts of event history in memory.
+ * <p>
+ * Times are epoch millis, enums are ordinals, unit lists are bitsets and EPCs are packed into two longs (see
+ * {@link EpcCodec}). The EPCs of an event are stored column-wise in primitive arrays, so the number of objects per
+ * event does not depend on the number of EPCs. Values which cannot be represented compactly (e.g. unit ids above 31,
+ * lower case EPCs or times in another format) are kept as they are, so {@link #toEvent()} always restores an event
+ * equal to the original.
+ */
+public final class CompactEvent {
+
+    /** Marker for an absent aisle or value. */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final Event.Direction[] DIRECTIONS = Event.Direction.values();
+    private static final Epc.EasStatus[] EAS_STATUSES = Epc.EasStatus.values();
+    private static final InputObservationEvent.Source[] SOURCES = InputObservationEvent.Source.values();
+
+    /** Unit ids that fit in an int bitset. */
+    private static final int MAX_MASK_UNIT = Integer.SIZE - 1;
+    /** Stands for a null unit list where a fallback list is needed. */
+    private static final int[] NULL_UNITS = new int[0];
+    /** Stands for a null time where a fallback text is needed. */
+    private static final String NULL_TIME = new String("null");
+
+    private final String id;
+    private final byte type;
+    private final long time;
+    private final String timeText;
+    private final String group;
+    private final int unitMask;
+    private final int[] unitList;
+    private final int aisle;
+    private final byte direction;
+    /** Jammer status, input status or SD address, depending on the type. */
+    private final int value;
+    private final byte source;
+
+    // EPC columns; for RFID alarms these hold the single alarming EPC
+    private final int epcCount;
+    private final long[] epcHigh;
+    private final long[] epcLow;
+    private final byte[] epcDigits;
+    private final String[] epcText;
+    private final long[] epcTime;
+    private final String[] epcTimeText;
+    private final byte[] easStatus;
+    private final String[] epcGroup;
+    private final int[] epcUnitMask;
+    private final int[][] epcUnitList;
+    private final int[] epcAisle;
+
+    private CompactEvent(final Event event, final List<Epc> epcs, final String alarmEpc) {
+        id = event.getId();
+        type = ordinal(event.getType());
+        timeText = nonCanonicalTime(event.getTime());
+        time = timeText == null ? EventTimes.toEpochMillis(event.getTime()) : NO_VALUE;
+        group = event.getGroup();
+        unitList = fallbackUnits(event.getUnits());
+        unitMask = unitList == null ? mask(event.getUnits()) : 0;
+        aisle = event.getAisle() != null ? event.getAisle() : NO_VALUE;
+        direction = ordinal(event.getDirection());
+
+        if (event instanceof RfJammerEvent) {
+            value = ((RfJammerEvent) event).isStatus() ? 1 : 0;
+            source = -1;
+        } else if (event instanceof InputObservationEvent) {
+            final InputObservationEvent input = (InputObservationEvent) event;
+            value = input.getStatus() != null ? (input.getStatus() ? 1 : 0) : NO_VALUE;
+            source = ordinal(input.getSource());
+        } else if (event instanceof SdLabelDetectEvent) {
+            final Integer sdAddress = ((SdLabelDetectEvent) event).getSdAddress();
+            value = sdAddress != null ? sdAddress : NO_VALUE;
+            source = -1;
+        } else {
+            value = NO_VALUE;
+            source = -1;
+        }
+
+        epcCount = epcs != null ? epcs.size() : (alarmEpc != null ? 1 : 0);
+        epcHigh = new long[epcCount];
+        epcLow = new long[epcCount];
+        epcDigits = new byte[epcCount];
+        epcTime = new long[epcCount];
+        easStatus = new byte[epcCount];
+        epcGroup = new String[epcCount];
+        epcUnitMask = new int[epcCount];
+        epcAisle = new int[epcCount];
+
+        String[] texts = null;
+        String[] timeTexts = null;
+        int[][] unitLists = null;
+        for (int i = 0; i < epcCount; i++) {
+            final Epc epc = epcs != null ? epcs.get(i) : null;
+            final String hex = epc != null ? epc.getEpc() : alarmEpc;
+            if (isExactlyPackable(hex)) {
+                epcHigh[i] = EpcCodec.high(hex);
+                epcLow[i] = EpcCodec.low(hex);
+                epcDigits[i] = (byte) hex.length();
+            } else {
+                texts = texts != null ? texts : new String[epcCount];
+                texts[i] = hex;
+            }
+            if (epc == null) {
+                // alarming EPC of an RFID alarm, which has no details of its own
+                epcTime[i] = NO_VALUE;
+                easStatus[i] = -1;
+                epcAisle[i] = NO_VALUE;
+                continue;
+            }
+
+            final String epcTimeValue = nonCanonicalTime(epc.getTime());
+            if (epcTimeValue != null) {
+                timeTexts = timeTexts != null ? timeTexts : new String[epcCount];
+                timeTexts[i] = epcTimeValue;
+                epcTime[i] = NO_VALUE;
+            } else {
+                epcTime[i] = EventTimes.toEpochMillis(epc.getTime());
+            }
+            easStatus[i] = ordinal(epc.getEasStatus());
+            epcGroup[i] = shared(epc.getGroup(), i);
+            final int[] fallback = fallbackUnits(epc.getUnits());
+            if (fallback != null) {
+                unitLists = unitLists != null ? unitLists : new int[epcCount][];
+                unitLists[i] = fallback;
+            } else {
+                epcUnitMask[i] = mask(epc.getUnits());
+            }
+            epcAisle[i] = epc.getAisle() != null ? epc.getAisle() : NO_VALUE;
+        }
+        epcText = texts;
+        epcTimeText = timeTexts;
+        epcUnitList = unitLists;
+    }
+
+    /**
+     * Converts an event into its compact form.
+     *
+     * @param event event as parsed from Renos
+     * @return compact event
+     */
+    public static CompactEvent from(final Event event) {
+        if (event instanceof RfidObservationEvent) {
+            return new CompactEvent(event, ((RfidObservationEvent) event).getEpcs(), null);
+        } else if (event instanceof RfidMoveEvent) {
+            return new CompactEvent(event, ((RfidMoveEvent) event).getEpcs(), null);
+        } else if (event instanceof RfidAlarmEvent) {
+            return new CompactEvent(event, null, ((RfidAlarmEvent) event).getEpc());
+        }
+        return new CompactEvent(event, null, null);
+    }
+
+    /**
+     * Restores the event this compact event was created from.
+     *
+     * @return event equal to the original
+     */
+    public Event toEvent() {
+        final Event event;
+        switch (getType()) {
+            case RF_ALARM:
+                event = new RfAlarmEvent();
+                break;
+            case RF_JAMMER:
+                final RfJammerEvent jammer = new RfJammerEvent();
+                jammer.setStatus(value == 1);
+                event = jammer;
+                break;
+            case RFID_ALARM:
+                final RfidAlarmEvent alarm = new RfidAlarmEvent();
+                alarm.setEpc(epcCount == 1 ? getEpc(0) : null);
+                event = alarm;
+                break;
+            case RFID_OBSERVATION:
+                event = new RfidObservationEvent(null, null, toEpcs());
+                break;
+            case RFID_MOVE:
+                event = new RfidMoveEvent(null, null, null, toEpcs());
+                break;
+            case IR_DIRECTION:
+                event = new IrDirectionEvent();
+                break;
+            case METAL_ALARM:
+                event = new MetalAlarmEvent();
+                break;
+            case MAGNET_OBSERVATION:
+                event = new MagnetObservationEvent();
+                break;
+            case TROLLEY_OBSERVATION:
+                event = new TrolleyObservationEvent();
+                break;
+            case INPUT_OBSERVATION:
+                event = new InputObservationEvent(null, null, null, null,
+                        source >= 0 ? SOURCES[source] : null, value != NO_VALUE ? value == 1 : null);
+                break;
+            case SD_LABEL_DETECT:
+                event = new SdLabelDetectEvent(null, null, null, null, value != NO_VALUE ? value : null);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported event type " + getType());
+        }
+        event.setId(id);
+        event.setTime(getTimeText());
+        event.setGroup(group);
+        event.setUnits(units(unitMask, unitList));
+        event.setAisle(aisle != NO_VALUE ? aisle : null);
+        event.setDirection(getDirection());
+        return event;
+    }
+
+    private List<Epc> toEpcs() {
+        final List<Epc> epcs = new ArrayList<>(epcCount);
+        for (int i = 0; i < epcCount; i++) {
+            epcs.add(new Epc(getEpc(i), getEpcTimeText(i), getEasStatus(i), epcGroup[i],
+                    units(epcUnitMask[i], epcUnitList != null ? epcUnitList[i] : null), getEpcAisle(i)));
+        }
+        return epcs;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public EventType getType() {
+        return type >= 0 ? EVENT_TYPES[type] : null;
+    }
+
+    /**
+     * @return time of the event in epoch millis, or {@link #NO_VALUE} if it was not in a canonical ISO-8601 format
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return time of the event as sent by Renos
+     */
+    public String getTimeText() {
+        if (timeText != null) {
+            return timeText != NULL_TIME ? timeText : null;
+        }
+        return EventTimes.format(time);
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @return true if the event was detected by the given unit
+     */
+    public boolean hasUnit(final int unit) {
+        return hasUnit(unitMask, unitList, unit);
+    }
+
+    /**
+     * @return aisle of the event, or {@link #NO_VALUE}
+     */
+    public int getAisle() {
+        return aisle;
+    }
+
+    public Event.Direction getDirection() {
+        return direction >= 0 ? DIRECTIONS[direction] : null;
+    }
+
+    /**
+     * @return number of EPCs of an RFID observation or move event, 1 for an RFID alarm, 0 otherwise
+     */
+    public int getEpcCount() {
+        return epcCount;
+    }
+
+    /**
+     * @return upper 64 bits of the packed EPC, see {@link EpcCodec}
+     */
+    public long getEpcHigh(final int index) {
+        return epcHigh[index];
+    }
+
+    /**
+     * @return lower 64 bits of the packed EPC, see {@link EpcCodec}
+     */
+    public long getEpcLow(final int index) {
+        return epcLow[index];
+    }
+
+    /**
+     * @return number of hex digits of the packed EPC, or 0 if the EPC could not be packed
+     */
+    public int getEpcDigits(final int index) {
+        return epcDigits[index];
+    }
+
+    /**
+     * @return hex EPC as sent by Renos
+     */
+    public String getEpc(final int index) {
+        if (epcDigits[index] == 0) {
+            return epcText != null ? epcText[index] : null;
+        }
+        return EpcCodec.toHex(epcHigh[index], epcLow[index], epcDigits[index]);
+    }
+
+    /**
+     * @return time of the EPC sighting in epoch millis, or {@link #NO_VALUE}
+     */
+    public long getEpcTime(final int index) {
+        return epcTime[index];
+    }
+
+    private String getEpcTimeText(final int index) {
+        if (epcTimeText != null && epcTimeText[index] != null) {
+            return epcTimeText[index] != NULL_TIME ? epcTimeText[index] : null;
+        }
+        return epcTime[index] != NO_VALUE ? EventTimes.format(epcTime[index]) : null;
+    }
+
+    public Epc.EasStatus getEasStatus(final int index) {
+        return easStatus[index] >= 0 ? EAS_STATUSES[easStatus[index]] : null;
+    }
+
+    public String getEpcGroup(final int index) {
+        return epcGroup[index];
+    }
+
+    /**
+     * @return true if the EPC was detected by the given unit
+     */
+    public boolean epcHasUnit(final int index, final int unit) {
+        return hasUnit(epcUnitMask[index], epcUnitList != null ? epcUnitList[index] : null, unit);
+    }
+
+    /**
+     * @return aisle in which the EPC was seen, or {@link #NO_VALUE}
+     */
+    public int getEpcAisleValue(final int index) {
+        return epcAisle[index];
+    }
+
+    private Integer getEpcAisle(final int index) {
+        return epcAisle[index] != NO_VALUE ? epcAisle[index] : null;
+    }
+
+    /**
+     * @return null if the time can be restored from epoch millis, otherwise the text to keep
+     */
+    private static String nonCanonicalTime(final String time) {
+        if (time == null) {
+            return NULL_TIME;
+        }
+        if (EventTimes.isCanonical(time)) {
+            try {
+                EventTimes.toEpochMillis(time);
+                return null;
+            } catch (final DateTimeParseException e) {
+                // not a valid date, keep as text
+            }
+        }
+        return time;
+    }
+
+    /**
+     * Reuses the group instance of a previous EPC, so duplicate strings can be collected right away.
+     */
+    private String shared(final String value, final int index) {
+        if (value == null) {
+            return null;
+        }
+        if (value.equals(group)) {
+            return group;
+        }
+        if (index > 0 && value.equals(epcGroup[index - 1])) {
+            return epcGroup[index - 1];
+        }
+        return value;
+    }
+
+    private static byte ordinal(final Enum<?> value) {
+        return value != null ? (byte) value.ordinal() : -1;
+    }
+
+    /**
+     * @return null if the units fit in a bitset without losing order or duplicates, otherwise the units to keep
+     */
+    private static int[] fallbackUnits(final List<Integer> units) {
+        if (units == null) {
+            return NULL_UNITS;
+        }
+        int previous = -1;
+        for (final Integer unit : units) {
+            if (unit == null || unit <= previous || unit > MAX_MASK_UNIT) {
+                final int[] copy = new int[units.size()];
+                for (int i = 0; i < copy.length; i++) {
+                    // a null unit id cannot be restored, it is stored as NO_VALUE
+                    copy[i] = units.get(i) != null ? units.get(i) : NO_VALUE;
+                }
+                return copy;
+            }
+            previous = unit;
+        }
+        return null;
+    }
+
+    private static int mask(final List<Integer> units) {
+        int mask = 0;
+        for (final Integer unit : units) {
+            mask |= 1 << unit;
+        }
+        return mask;
+    }
+
+    private static List<Integer> units(final int mask, final int[] fallback) {
+        if (fallback == NULL_UNITS) {
+            return null;
+        }
+        final List<Integer> units = new ArrayList<>();
+        if (fallback != null) {
+            for (final int unit : fallback) {
+                units.add(unit != NO_VALUE ? unit : null);
+            }
+            return units;
+        }
+        for (int bits = mask; bits != 0; bits &= bits - 1) {
+            units.add(Integer.numberOfTrailingZeros(bits));
+        }
+        return units;
+    }
+
+    private static boolean hasUnit(final int mask, final int[] fallback, final int unit) {
+        if (fallback == null) {
+            return unit >= 0 && unit <= MAX_MASK_UNIT && (mask & (1 << unit)) != 0;
+        }
+        for (final int value : fallback) {
+            if (value == unit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if packing the EPC and restoring it yields the same text, i.e. upper case hex of at most 32 digits
+     */
+    private static boolean isExactlyPackable(final String epc) {
+        if (!EpcCodec.isPackable(epc)) {
+            return false;
+        }
+        for (int i = 0; i < epc.length(); i++) {
+            if (Character.isLowerCase(epc.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return unmodifiable list of all EPCs of this event as hex strings
+     */
+    public List<String> getEpcs() {
+        final List<String> epcs = new ArrayList<>(epcCount);
+        for (int i = 0; i < epcCount; i++) {
+            epcs.add(getEpc(i));
+        }
+        return Collections.unmodifiableList(epcs);
+    }
+}
@@ -0,0 +1,67 @@
+package com.nedap.retail.example.event;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversion between the ISO-8601 times used by Renos and epoch millis. Times are decoded by a shared
+ * {@link TimestampDecoder}; components which decode the times of one stream of events keep a decoder of their own.
+ */
+public final class EventTimes {
+
+    /**
+     * Format of times that can be restored exactly from their epoch millis, e.g. 2020-01-01T12:00:00.000Z.
+     */
+    private static final DateTimeFormatter CANONICAL_FORMAT = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final String CANONICAL_SHAPE = "dddd-dd-ddTdd:dd:dd.dddZ";
+    private static final TimestampDecoder DECODER = new TimestampDecoder();
+
+    private EventTimes() {
+    }
+
+    /**
+     * @param time ISO-8601 time, in UTC or with an offset
+     * @return epoch millis
+     * @throws DateTimeParseException if the time could not be parsed
+     */
+    public static long toEpochMillis(final String time) {
+        return DECODER.toEpochMillis(time);
+    }
+
+    /**
+     * @param time ISO-8601 time, in UTC or with an offset
+     * @return epoch nanos
+     * @throws DateTimeParseException if the time could not be parsed
+     * @throws ArithmeticException if the time does not fit in epoch nanos
+     */
+    public static long toEpochNanos(final String time) {
+        return DECODER.toEpochNanos(time);
+    }
+
+    /**
+     * @return true if the time is in the format produced by {@link #format(long)}
+     */
+    public static boolean isCanonical(final String time) {
+        if (time.length() != CANONICAL_SHAPE.length()) {
+            return false;
+        }
+        for (int i = 0; i < time.length(); i++) {
+            final char expected = CANONICAL_SHAPE.charAt(i);
+            final char actual = time.charAt(i);
+            if (expected == 'd' ? actual < '0' || actual > '9' : actual != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return UTC time with millisecond precision, e.g. 2020-01-01T12:00:00.000Z
+     */
+    public static String format(final long epochMillis) {
+        return CANONICAL_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+}
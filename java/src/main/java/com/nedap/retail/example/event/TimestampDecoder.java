@@ -0,0 +1,193 @@
+package com.nedap.retail.example.event;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decodes the ISO-8601 times sent by Renos, e.g. 2020-01-01T12:00:00.000+02:00, to epoch millis or nanos without
+ * creating objects. The date and hour of the last time decoded are cached, as consecutive events and the EPCs within
+ * an event mostly share them; the rest is read digit by digit. Times in another ISO-8601 shape, such as without seconds
+ * or with a lowercase T, are handed to {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}, which gives the same results.
+ * <p>
+ * Safe for use by several threads, but each decoder caches one hour only: give each stream of events its own decoder
+ * rather than sharing one between devices in different time zones.
+ */
+public final class TimestampDecoder {
+
+    private static final int PREFIX_LENGTH = "dddd-dd-ddTdd".length();
+    private static final int SECONDS_END = "dddd-dd-ddTdd:dd:dd".length();
+    private static final int MAX_FRACTION_DIGITS = 9;
+    private static final int[] FRACTION_SCALE = { 0, 100000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1 };
+    private static final int NANOS_PER_MILLI = 1000000;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long MAX_EPOCH_SECOND = Long.MAX_VALUE / NANOS_PER_SECOND - 1;
+    private static final long NOT_DECODED = Long.MIN_VALUE;
+
+    /** Immutable, so it can be shared between threads without synchronization. */
+    private Prefix cached;
+
+    /**
+     * @param time ISO-8601 time, in UTC or with an offset
+     * @return epoch millis
+     * @throws DateTimeParseException if the time could not be parsed
+     */
+    public long toEpochMillis(final String time) {
+        final long nanos = decode(time);
+        if (nanos == NOT_DECODED) {
+            return parse(time).toEpochMilli();
+        }
+        final long seconds = Math.floorDiv(nanos, NANOS_PER_SECOND);
+        return seconds * 1000 + Math.floorMod(nanos, NANOS_PER_SECOND) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param time ISO-8601 time, in UTC or with an offset
+     * @return epoch nanos
+     * @throws DateTimeParseException if the time could not be parsed
+     * @throws ArithmeticException if the time is before 1677 or after 2262, which do not fit in epoch nanos
+     */
+    public long toEpochNanos(final String time) {
+        final long nanos = decode(time);
+        if (nanos == NOT_DECODED) {
+            final Instant instant = parse(time);
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+        }
+        return nanos;
+    }
+
+    private static Instant parse(final String time) {
+        return Instant.from(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(time));
+    }
+
+    /**
+     * @return epoch nanos, or {@link #NOT_DECODED} if the time is not in the usual shape or out of range
+     */
+    private long decode(final String time) {
+        final int length = time.length();
+        if (length < SECONDS_END + 1 || time.charAt(13) != ':' || time.charAt(16) != ':') {
+            return NOT_DECODED;
+        }
+        final int minute = twoDigits(time, 14);
+        final int second = twoDigits(time, 17);
+        if (minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NOT_DECODED;
+        }
+
+        int position = SECONDS_END;
+        int nano = 0;
+        if (time.charAt(position) == '.') {
+            position++;
+            final int fractionStart = position;
+            while (position < length && position - fractionStart < MAX_FRACTION_DIGITS) {
+                final int digit = time.charAt(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                nano = nano * 10 + digit;
+                position++;
+            }
+            final int digits = position - fractionStart;
+            if (digits == 0) {
+                return NOT_DECODED;
+            }
+            nano *= FRACTION_SCALE[digits];
+        }
+
+        final int offsetSeconds = offsetSeconds(time, position);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return NOT_DECODED;
+        }
+
+        Prefix prefix = cached;
+        if (prefix == null || !time.regionMatches(0, prefix.text, 0, PREFIX_LENGTH)) {
+            prefix = Prefix.decode(time);
+            if (prefix == null) {
+                return NOT_DECODED;
+            }
+            cached = prefix;
+        }
+
+        final long epochSecond = prefix.epochSecond + minute * 60 + second - offsetSeconds;
+        if (epochSecond > MAX_EPOCH_SECOND || epochSecond < -MAX_EPOCH_SECOND) {
+            return NOT_DECODED;
+        }
+        return epochSecond * NANOS_PER_SECOND + nano;
+    }
+
+    /**
+     * @return offset at the end of the time, Z or +HH:MM, in seconds, or {@link Integer#MIN_VALUE} if there is none
+     */
+    private static int offsetSeconds(final String time, final int position) {
+        final int remaining = time.length() - position;
+        if (remaining == 0) {
+            return Integer.MIN_VALUE;
+        }
+        final char sign = time.charAt(position);
+        if (remaining == 1 && sign == 'Z') {
+            return 0;
+        }
+        if (remaining != 6 || (sign != '+' && sign != '-') || time.charAt(position + 3) != ':') {
+            return Integer.MIN_VALUE;
+        }
+        final int hours = twoDigits(time, position + 1);
+        final int minutes = twoDigits(time, position + 4);
+        // 18:00 is the largest offset allowed, leave it to the formatter
+        if (hours < 0 || hours > 17 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        final int seconds = hours * 3600 + minutes * 60;
+        return sign == '-' ? -seconds : seconds;
+    }
+
+    /**
+     * @return value of the two digits at the index, or -1 if they are not digits
+     */
+    private static int twoDigits(final String time, final int index) {
+        final int tens = time.charAt(index) - '0';
+        final int units = time.charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            return -1;
+        }
+        return tens * 10 + units;
+    }
+
+    /**
+     * Date and hour of a time, e.g. 2020-01-01T12, with the epoch second at which that hour starts in UTC.
+     */
+    private static final class Prefix {
+
+        private final String text;
+        private final long epochSecond;
+
+        private Prefix(final String text, final long epochSecond) {
+            this.text = text;
+            this.epochSecond = epochSecond;
+        }
+
+        /**
+         * @return prefix of the time, or null if it is not a valid date and hour
+         */
+        static Prefix decode(final String time) {
+            if (time.charAt(4) != '-' || time.charAt(7) != '-' || time.charAt(10) != 'T') {
+                return null;
+            }
+            final int century = twoDigits(time, 0);
+            final int yearOfCentury = twoDigits(time, 2);
+            final int month = twoDigits(time, 5);
+            final int day = twoDigits(time, 8);
+            final int hour = twoDigits(time, 11);
+            if (century < 0 || yearOfCentury < 0 || month < 0 || day < 0 || hour < 0 || hour > 23) {
+                return null;
+            }
+            try {
+                final long epochDay = LocalDate.of(century * 100 + yearOfCentury, month, day).toEpochDay();
+                return new Prefix(time.substring(0, PREFIX_LENGTH), epochDay * 86400 + hour * 3600);
+            } catch (final DateTimeException e) {
+                return null;
+            }
+        }
+    }
+}
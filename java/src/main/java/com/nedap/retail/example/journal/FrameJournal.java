@@ -0,0 +1,187 @@
+package com.nedap.retail.example.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of raw WebSocket frames on local disk. Frames are written into memory-mapped segment files, so
+ * appending never blocks on a write system call and frames survive a crash of the process as soon as they have been
+ * appended. Segments are rolled when full or too old, and the oldest segments are removed when the journal exceeds
+ * its byte budget.
+ * <p>
+ * Each record consists of its length, which is written last and marks the record as complete, the receive time in
+ * epoch millis, the source device and the frame, all strings in UTF-8. Receive times never decrease from one record
+ * to the next, also when frames of several devices are appended concurrently. Use {@link JournalReader} to replay
+ * frames.
+ */
+public class FrameJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FrameJournal.class);
+
+    /** Length, receive time and device length. */
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Short.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSegmentAgeMillis;
+    private final long retentionBytes;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final Map<String, byte[]> encodedDevices = new HashMap<>();
+
+    private long nextSequence;
+    private Path segmentPath;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long segmentCreated;
+    private long lastReceivedAt = Long.MIN_VALUE;
+
+    /**
+     * @param directory directory to store segments in, created if needed
+     * @param segmentSize size of a segment file in bytes
+     * @param maxSegmentAgeMillis time after which a new segment is started, even if the current one is not full
+     * @param retentionBytes maximum total size of all segments; the oldest segments are removed beyond this
+     * @throws IOException if the directory could not be created or read
+     */
+    public FrameJournal(final Path directory, final int segmentSize, final long maxSegmentAgeMillis,
+            final long retentionBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+        this.retentionBytes = retentionBytes;
+
+        final List<Path> existing = JournalSegments.list(directory);
+        nextSequence = existing.isEmpty() ? 0 : JournalSegments.sequence(existing.get(existing.size() - 1)) + 1;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends a frame to the journal, received now.
+     *
+     * @param device source device
+     * @param frame frame as received
+     * @throws IOException if a segment could not be created or the frame is not valid UTF-16
+     */
+    public synchronized void append(final String device, final String frame) throws IOException {
+        append(System.currentTimeMillis(), device, frame);
+    }
+
+    /**
+     * Appends a frame to the journal. A receive time before that of the previous record is recorded as the time of
+     * the previous record, so that replaying a time range can stop at the first record beyond it.
+     *
+     * @param time receive time in epoch millis
+     * @param device source device
+     * @param frame frame as received
+     * @throws IOException if a segment could not be created or the frame is not valid UTF-16
+     */
+    public synchronized void append(final long time, final String device, final String frame) throws IOException {
+        final long receivedAt = Math.max(time, lastReceivedAt);
+        final byte[] deviceBytes = encodedDevices.computeIfAbsent(device,
+                d -> d.getBytes(StandardCharsets.UTF_8));
+        // worst case of UTF-8 is 3 bytes per char
+        final int maxRecordSize = RECORD_HEADER_SIZE + deviceBytes.length + 3 * frame.length();
+
+        if (segment == null || segment.remaining() < maxRecordSize + Integer.BYTES
+                || receivedAt - segmentCreated >= maxSegmentAgeMillis) {
+            roll(receivedAt, maxRecordSize + Integer.BYTES);
+        }
+
+        final int start = segment.position();
+        segment.position(start + Integer.BYTES);
+        segment.putLong(receivedAt);
+        segment.putShort((short) deviceBytes.length);
+        segment.put(deviceBytes);
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(frame), segment, true);
+        if (!result.isError() && !result.isOverflow()) {
+            result = encoder.flush(segment);
+        }
+        if (result.isError() || result.isOverflow()) {
+            // leave the record uncommitted, the next one overwrites it
+            segment.position(start);
+            result.throwException();
+        }
+        // commit the record by writing its length last
+        segment.putInt(start, segment.position() - start - Integer.BYTES);
+        lastReceivedAt = receivedAt;
+    }
+
+    /**
+     * Forces the current segment to the storage device, for durability beyond a crash of the process.
+     */
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private void roll(final long now, final int minimumSize) throws IOException {
+        closeSegment();
+
+        final Path path = directory.resolve(JournalSegments.name(nextSequence++, now));
+        segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minimumSize));
+        segmentPath = path;
+        segmentCreated = now;
+        LOG.debug("Started journal segment {}", path);
+
+        enforceRetention();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.force();
+        try {
+            // release the unused tail of the segment
+            segmentChannel.truncate(segment.position());
+        } catch (final IOException e) {
+            LOG.debug("Could not truncate journal segment {}", segmentPath, e);
+        }
+        segmentChannel.close();
+        segment = null;
+        segmentChannel = null;
+        segmentPath = null;
+    }
+
+    private void enforceRetention() throws IOException {
+        final List<Path> segments = JournalSegments.list(directory);
+        long total = 0;
+        for (final Path path : segments) {
+            total += Files.size(path);
+        }
+        // never remove the segment that is being written
+        for (int i = 0; i < segments.size() - 1 && total > retentionBytes; i++) {
+            final Path oldest = segments.get(i);
+            total -= Files.size(oldest);
+            Files.delete(oldest);
+            LOG.debug("Removed journal segment {}", oldest);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+    }
+}
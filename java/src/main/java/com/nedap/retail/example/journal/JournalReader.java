@@ -0,0 +1,127 @@
+package com.nedap.retail.example.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.websocket.client.WebSocketListener;
+
+/**
+ * Replays frames from a {@link FrameJournal} directory through a {@link WebSocketListener}, e.g. to reprocess an
+ * incident offline. Reading stops at the first incomplete record of a segment, so a journal that is still being
+ * written or was left behind by a crash can be read safely.
+ */
+public class JournalReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalReader.class);
+
+    /**
+     * Pace at which frames are replayed.
+     */
+    public enum ReplaySpeed {
+        /** Frames are delivered with the same spacing as they were received. */
+        ORIGINAL,
+        /** Frames are delivered as fast as the listener accepts them. */
+        MAXIMUM
+    }
+
+    private final Path directory;
+
+    public JournalReader(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replays all frames received within a time range.
+     *
+     * @param from start of the range in epoch millis, inclusive
+     * @param to end of the range in epoch millis, exclusive
+     * @param device only replay frames from this device, or null for all devices
+     * @param listener receives the frames
+     * @param speed pace of the replay
+     * @return number of frames replayed
+     * @throws IOException if the journal could not be read
+     * @throws InterruptedException if interrupted while waiting between frames
+     */
+    public long replay(final long from, final long to, final String device, final WebSocketListener listener,
+            final ReplaySpeed speed) throws IOException, InterruptedException {
+        final byte[] deviceBytes = device != null ? device.getBytes(StandardCharsets.UTF_8) : null;
+        final List<Path> segments = JournalSegments.list(directory);
+        long replayed = 0;
+        long previousReceivedAt = -1;
+
+        for (int i = 0; i < segments.size(); i++) {
+            final Path segment = segments.get(i);
+            if (JournalSegments.firstFrameMillis(segment) >= to) {
+                break;
+            }
+            if (i + 1 < segments.size() && JournalSegments.firstFrameMillis(segments.get(i + 1)) < from) {
+                // all frames in this segment are older than the range
+                continue;
+            }
+
+            final MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (final NoSuchFileException e) {
+                LOG.debug("Journal segment {} was removed before it could be read", segment);
+                continue;
+            }
+
+            while (buffer.remaining() >= FrameJournal.RECORD_HEADER_SIZE) {
+                final int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                final int next = buffer.position() + length;
+                final long receivedAt = buffer.getLong();
+                final int deviceLength = buffer.getShort();
+
+                if (receivedAt >= to) {
+                    return replayed;
+                }
+                if (receivedAt < from || !matchesDevice(buffer, deviceLength, deviceBytes)) {
+                    buffer.position(next);
+                    continue;
+                }
+
+                buffer.position(buffer.position() + deviceLength);
+                final byte[] frame = new byte[next - buffer.position()];
+                buffer.get(frame);
+
+                if (speed == ReplaySpeed.ORIGINAL && previousReceivedAt >= 0 && receivedAt > previousReceivedAt) {
+                    Thread.sleep(receivedAt - previousReceivedAt);
+                }
+                previousReceivedAt = receivedAt;
+                listener.onMessage(new String(frame, StandardCharsets.UTF_8));
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private static boolean matchesDevice(final MappedByteBuffer buffer, final int deviceLength,
+            final byte[] deviceBytes) {
+        if (deviceBytes == null) {
+            return true;
+        }
+        if (deviceLength != deviceBytes.length) {
+            return false;
+        }
+        final int start = buffer.position();
+        for (int i = 0; i < deviceLength; i++) {
+            if (buffer.get(start + i) != deviceBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
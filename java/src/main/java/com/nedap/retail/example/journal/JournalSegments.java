@@ -0,0 +1,50 @@
+package com.nedap.retail.example.journal;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Naming of journal segment files: sequence number and time of the first frame, zero padded so that the
+ * lexicographic order is the order in which segments were written.
+ */
+final class JournalSegments {
+
+    private static final String PREFIX = "frames-";
+    private static final String SUFFIX = ".journal";
+
+    private JournalSegments() {
+    }
+
+    static String name(final long sequence, final long firstFrameMillis) {
+        return String.format("%s%012d-%015d%s", PREFIX, sequence, firstFrameMillis, SUFFIX);
+    }
+
+    static long sequence(final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.indexOf('-', PREFIX.length())));
+    }
+
+    static long firstFrameMillis(final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return all segments in the directory, oldest first
+     */
+    static List<Path> list(final Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (final Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
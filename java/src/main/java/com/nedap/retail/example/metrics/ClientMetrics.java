@@ -0,0 +1,276 @@
+package com.nedap.retail.example.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Metrics of a client: frames received per event type, parse latency and failures, the lag between devices and
+ * client, REST latency per endpoint and status, reconnects, and bytes read from the network next to their size
+ * uncompressed. Recording is lock-free and does not allocate, apart from the first request to a REST endpoint;
+ * reading goes through {@link #collect(MetricsVisitor)}, see {@link MetricsHttpServer} and {@link MetricsMBean}. One
+ * instance can be shared by the clients of a fleet.
+ */
+public class ClientMetrics {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double MILLIS_PER_SECOND = 1e3;
+    private static final EventType[] TYPES = EventType.values();
+    private static final String[] TYPE_LABELS = new String[TYPES.length];
+    private static final int MAX_STATUS = 600;
+
+    static {
+        for (final EventType type : TYPES) {
+            TYPE_LABELS[type.ordinal()] = "type=\"" + type.name().toLowerCase(Locale.ROOT) + "\"";
+        }
+    }
+
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder wireBytesReceived = new LongAdder();
+    private final LongAdder duplicateFrames = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+
+    private final LongAdder[] eventFrames = adders(TYPES.length);
+    private final LongAdder[] eventBytes = adders(TYPES.length);
+    private final LatencyHistogram[] parseNanos = histograms(TYPES.length);
+    private final LatencyHistogram[] lagMillis = histograms(TYPES.length);
+
+    private final ConcurrentMap<String, RestEndpoint> restEndpoints = new ConcurrentHashMap<>();
+
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder connectionsLost = new LongAdder();
+    private final LongAdder compressedConnections = new LongAdder();
+    private final LongAdder uncompressedConnections = new LongAdder();
+
+    private static LongAdder[] adders(final int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static LatencyHistogram[] histograms(final int size) {
+        final LatencyHistogram[] histograms = new LatencyHistogram[size];
+        for (int i = 0; i < size; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Records a frame as received on the WebSocket, before any filtering.
+     */
+    public void recordFrame(final String frame) {
+        recordFrame(utf8Length(frame));
+    }
+
+    /**
+     * Records a frame as received on the WebSocket, before any filtering.
+     *
+     * @param bytes size of the frame as UTF-8
+     */
+    public void recordFrame(final long bytes) {
+        framesReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * Records bytes read from the network for the WebSocket, which are compressed if compression was negotiated.
+     */
+    public void recordWireBytes(final long bytes) {
+        wireBytesReceived.add(bytes);
+    }
+
+    /**
+     * Records a frame dropped because its event was received before.
+     */
+    public void recordDuplicate() {
+        duplicateFrames.increment();
+    }
+
+    /**
+     * Records a decoded event frame.
+     *
+     * @param type type of the event
+     * @param frame the frame
+     * @param parseNanos time taken to decode the frame
+     */
+    public void recordEvent(final EventType type, final String frame, final long parseNanos) {
+        recordEvent(type, utf8Length(frame), parseNanos);
+    }
+
+    /**
+     * Records a decoded event frame.
+     *
+     * @param type type of the event
+     * @param bytes size of the frame as UTF-8
+     * @param parseNanos time taken to decode the frame
+     */
+    public void recordEvent(final EventType type, final long bytes, final long parseNanos) {
+        final int index = type.ordinal();
+        eventFrames[index].increment();
+        eventBytes[index].add(bytes);
+        this.parseNanos[index].record(parseNanos);
+    }
+
+    /**
+     * Records the time between an event happening on the device and being handled by the client. Includes the
+     * difference between the clocks of both.
+     */
+    public void recordLag(final EventType type, final long lagMillis) {
+        this.lagMillis[type.ordinal()].record(lagMillis);
+    }
+
+    public void recordResponse() {
+        responses.increment();
+    }
+
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    /**
+     * Records a REST request, up to the response headers being received.
+     *
+     * @param endpoint path of the endpoint, e.g. /api/v2/info
+     * @param status HTTP status code, or 0 if no response was received
+     * @param nanos time taken
+     */
+    public void recordRest(final String endpoint, final int status, final long nanos) {
+        restEndpoints.computeIfAbsent(endpoint, RestEndpoint::new).record(status, nanos);
+    }
+
+    /**
+     * Records an attempt to reconnect being scheduled.
+     */
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+
+    /**
+     * Records a connection being established.
+     *
+     * @param compressed whether permessage-deflate was negotiated
+     */
+    public void recordConnect(final boolean compressed) {
+        (compressed ? compressedConnections : uncompressedConnections).increment();
+    }
+
+    /**
+     * Records a connection found dead, e.g. by missing heartbeats.
+     */
+    public void recordConnectionLost() {
+        connectionsLost.increment();
+    }
+
+    /**
+     * Hands every metric to the visitor.
+     */
+    public void collect(final MetricsVisitor visitor) {
+        visitor.counter("renos_frames_received_total", "Frames received on the WebSocket", "",
+                framesReceived.sum());
+        visitor.counter("renos_bytes_received_total", "Bytes of frames received on the WebSocket, as UTF-8", "",
+                bytesReceived.sum());
+        visitor.counter("renos_wire_bytes_received_total",
+                "Bytes read from the network for the WebSocket, compressed if negotiated", "", wireBytesReceived.sum());
+        visitor.counter("renos_duplicate_frames_total", "Frames dropped as the event was received before", "",
+                duplicateFrames.sum());
+        visitor.counter("renos_responses_total", "Responses received", "", responses.sum());
+        visitor.counter("renos_parse_failures_total", "Frames that could not be parsed", "", parseFailures.sum());
+        for (int i = 0; i < TYPES.length; i++) {
+            visitor.counter("renos_event_frames_total", "Event frames received", TYPE_LABELS[i],
+                    eventFrames[i].sum());
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            visitor.counter("renos_event_bytes_total", "Bytes of event frames received, as UTF-8", TYPE_LABELS[i],
+                    eventBytes[i].sum());
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            visitor.histogram("renos_parse_seconds", "Time taken to decode event frames", TYPE_LABELS[i],
+                    parseNanos[i], NANOS_PER_SECOND);
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            visitor.histogram("renos_event_lag_seconds", "Time from event on the device to handling by the client",
+                    TYPE_LABELS[i], lagMillis[i], MILLIS_PER_SECOND);
+        }
+
+        final Map<String, RestEndpoint> endpoints = new TreeMap<>(restEndpoints);
+        for (final RestEndpoint endpoint : endpoints.values()) {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                final long requests = endpoint.statusCounts.get(status);
+                if (requests > 0) {
+                    visitor.counter("renos_rest_requests_total", "REST requests by status, 0 if failed",
+                            endpoint.label + ",status=\"" + status + "\"", requests);
+                }
+            }
+        }
+        for (final RestEndpoint endpoint : endpoints.values()) {
+            for (int statusClass = 0; statusClass < endpoint.latencyNanos.length; statusClass++) {
+                if (endpoint.latencyNanos[statusClass].getCount() > 0) {
+                    visitor.histogram("renos_rest_seconds", "Time taken by REST requests until the response headers",
+                            endpoint.label + ",status_class=\"" + RestEndpoint.STATUS_CLASSES[statusClass] + "\"",
+                            endpoint.latencyNanos[statusClass], NANOS_PER_SECOND);
+                }
+            }
+        }
+
+        visitor.counter("renos_reconnects_total", "Attempts to reconnect", "", reconnects.sum());
+        visitor.counter("renos_connections_lost_total", "Connections found dead", "", connectionsLost.sum());
+        visitor.counter("renos_connections_total", "Connections established", "compression=\"permessage-deflate\"",
+                compressedConnections.sum());
+        visitor.counter("renos_connections_total", "Connections established", "compression=\"none\"",
+                uncompressedConnections.sum());
+    }
+
+    /**
+     * @return number of bytes of the string encoded as UTF-8, counted without encoding it
+     */
+    static long utf8Length(final String s) {
+        final int length = s.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    // four bytes for the pair of chars
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static final class RestEndpoint {
+
+        private static final String[] STATUS_CLASSES = { "failed", "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+        private final String label;
+        private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+        private final LatencyHistogram[] latencyNanos = histograms(STATUS_CLASSES.length);
+
+        RestEndpoint(final String endpoint) {
+            this.label = "endpoint=\"" + endpoint + "\"";
+        }
+
+        void record(final int status, final long nanos) {
+            final int index = status > 0 && status < MAX_STATUS ? status : 0;
+            statusCounts.incrementAndGet(index);
+            latencyNanos[index / 100].record(nanos);
+        }
+    }
+}
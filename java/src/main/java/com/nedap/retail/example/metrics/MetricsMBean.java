@@ -0,0 +1,114 @@
+package com.nedap.retail.example.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.*;
+
+/**
+ * Exposes {@link ClientMetrics} over JMX, with an attribute per counter and per histogram statistic, named like the
+ * text metrics, e.g. {@code renos_parse_seconds{type="rfid_observation"} p99}.
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    private static final String DOMAIN = "com.nedap.retail.example";
+
+    private final ClientMetrics metrics;
+
+    public MetricsMBean(final ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name name to tell the clients or fleets of one JVM apart
+     * @return the name the metrics were registered under
+     * @throws JMException if the metrics could not be registered
+     */
+    public static ObjectName register(final ClientMetrics metrics, final String name) throws JMException {
+        final ObjectName objectName = new ObjectName(DOMAIN + ":type=ClientMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(metrics), objectName);
+        return objectName;
+    }
+
+    public static void unregister(final ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    private Map<String, Number> snapshot() {
+        final Map<String, Number> values = new LinkedHashMap<>();
+        metrics.collect(new MetricsVisitor() {
+            @Override
+            public void counter(final String name, final String help, final String labels, final long value) {
+                values.put(key(name, labels), value);
+            }
+
+            @Override
+            public void histogram(final String name, final String help, final String labels,
+                    final LatencyHistogram histogram, final double unit) {
+                final String key = key(name, labels);
+                values.put(key + " count", histogram.getCount());
+                values.put(key + " p50", histogram.getValueAtQuantile(0.5) / unit);
+                values.put(key + " p99", histogram.getValueAtQuantile(0.99) / unit);
+                values.put(key + " max", histogram.getMax() / unit);
+            }
+        });
+        return values;
+    }
+
+    private static String key(final String name, final String labels) {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Number value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final Map<String, Number> values = snapshot();
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            final Number value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature)
+            throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final Map<String, Number> values = snapshot();
+        final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (final Map.Entry<String, Number> entry : values.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics of the Renos client", attributes, null, null, null);
+    }
+}
@@ -0,0 +1,24 @@
+package com.nedap.retail.example.metrics;
+
+/**
+ * Receives the metrics of a {@link ClientMetrics} one by one, to export them in some format.
+ */
+public interface MetricsVisitor {
+
+    /**
+     * @param name name of the metric, e.g. renos_frames_received_total
+     * @param help description of the metric
+     * @param labels labels in the form {@code key="value",key="value"}, or an empty string
+     * @param value current value
+     */
+    void counter(String name, String help, String labels, long value);
+
+    /**
+     * @param name name of the metric, e.g. renos_parse_seconds
+     * @param help description of the metric
+     * @param labels labels in the form {@code key="value",key="value"}, or an empty string
+     * @param histogram the recorded values
+     * @param unit recorded values per unit of the metric, e.g. 1e9 for nanos recorded of a metric in seconds
+     */
+    void histogram(String name, String help, String labels, LatencyHistogram histogram, double unit);
+}
@@ -0,0 +1,94 @@
+package com.nedap.retail.example.metrics;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes metrics in the Prometheus text exposition format. Histograms are written as summaries with the 0.5, 0.9,
+ * 0.99 and 0.999 quantiles. Their maxima are written as a separate gauge named after the summary with a _max suffix,
+ * after all other metrics, since all samples of a metric must form one group; call {@link #finish()} to write them.
+ */
+public class TextMetricsWriter implements MetricsVisitor {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final StringBuilder sb;
+    private final Set<String> described = new HashSet<>();
+    /** Samples of the maximum gauges by name, written by {@link #finish()}. */
+    private final Map<String, StringBuilder> maxima = new LinkedHashMap<>();
+
+    public TextMetricsWriter(final StringBuilder sb) {
+        this.sb = sb;
+    }
+
+    /**
+     * @return the metrics as text
+     */
+    public static String write(final ClientMetrics metrics) {
+        final StringBuilder sb = new StringBuilder(16384);
+        final TextMetricsWriter writer = new TextMetricsWriter(sb);
+        metrics.collect(writer);
+        writer.finish();
+        return sb.toString();
+    }
+
+    @Override
+    public void counter(final String name, final String help, final String labels, final long value) {
+        describe(name, help, "counter");
+        sample(name, labels, Long.toString(value));
+    }
+
+    @Override
+    public void histogram(final String name, final String help, final String labels,
+            final LatencyHistogram histogram, final double unit) {
+        describe(name, help, "summary");
+        final String separator = labels.isEmpty() ? "" : ",";
+        for (final double quantile : QUANTILES) {
+            sample(name, labels + separator + "quantile=\"" + quantile + "\"",
+                    Double.toString(histogram.getValueAtQuantile(quantile) / unit));
+        }
+        sample(name + "_sum", labels, Double.toString(histogram.getSum() / unit));
+        sample(name + "_count", labels, Long.toString(histogram.getCount()));
+
+        final String maxName = name + "_max";
+        StringBuilder max = maxima.get(maxName);
+        if (max == null) {
+            max = new StringBuilder();
+            max.append("# HELP ").append(maxName).append(" Maximum of ").append(name).append('\n');
+            max.append("# TYPE ").append(maxName).append(" gauge\n");
+            maxima.put(maxName, max);
+        }
+        sample(max, maxName, labels, Double.toString(histogram.getMax() / unit));
+    }
+
+    /**
+     * Writes the maxima of the histograms visited.
+     */
+    public void finish() {
+        for (final StringBuilder max : maxima.values()) {
+            sb.append(max);
+        }
+        maxima.clear();
+    }
+
+    private void describe(final String name, final String help, final String type) {
+        if (described.add(name)) {
+            sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private void sample(final String name, final String labels, final String value) {
+        sample(sb, name, labels, value);
+    }
+
+    private static void sample(final StringBuilder sb, final String name, final String labels, final String value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+}
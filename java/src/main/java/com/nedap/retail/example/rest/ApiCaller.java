@@ -1,17 +1,16 @@
 package com.nedap.retail.example.rest;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.nedap.retail.renos.api.v2.rest.RestMessageParser;
+import com.nedap.retail.example.metrics.ClientMetrics;
 import com.nedap.retail.renos.api.v2.rest.message.*;
 
 /**
@@ -26,9 +25,18 @@ public class ApiCaller {
     private static final String DELETE = "DELETE";
     private static final String GET = "GET";
 
+    static final String SYSTEM_INFO_PATH = "/api/v2/info";
+    static final String GROUP_INFO_PATH = "/api/v2/group_info";
+    static final String SETTINGS_PATH = "/api/v2/settings";
+
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
     private final String baseUrl;
 
     private String token = "";
+    private volatile int connectTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile int readTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile ClientMetrics metrics;
 
 
     public ApiCaller(final String baseUrl) {
@@ -40,75 +48,145 @@ public class ApiCaller {
         this.baseUrl = baseUrl;
     }
 
-    private <T extends RestObject> T parseAndRethrow(final String json, final Class<T> clazz)
-            throws MessageParsingException {
-        try {
-            return Optional.ofNullable(RestMessageParser.parse(json, clazz))
-                    .orElseThrow(() -> new MessageParsingException(clazz.getSimpleName()));
-        } catch (final IOException e) {
-            throw new MessageParsingException(clazz.getSimpleName());
-        }
-    }
-
-    private <T extends RestObject> String serializeAndRethrow(final T object) {
-        return RestMessageParser.toJson(object);
-    }
-
     public void heartbeat() throws HttpRequestException {
-        doHttpRequest("/api/v2/heartbeat", GET, null);
+        send("/api/v2/heartbeat", GET, null);
     }
 
     public SystemInfo retrieveSystemInfo() throws HttpRequestException, MessageParsingException {
-        return parseAndRethrow(doHttpRequest("/api/v2/info", GET, null), SystemInfo.class);
+        return retrieve(SYSTEM_INFO_PATH, SystemInfo.class);
     }
 
     public GroupInfo retrieveGroupInfo() throws HttpRequestException, MessageParsingException {
-        return parseAndRethrow(doHttpRequest("/api/v2/group_info", GET, null), GroupInfo.class);
+        return retrieve(GROUP_INFO_PATH, GroupInfo.class);
     }
 
     public SystemStatus retrieveSystemStatus() throws HttpRequestException, MessageParsingException {
-        return parseAndRethrow(doHttpRequest("/api/v2/status", GET, null), SystemStatus.class);
+        return retrieve("/api/v2/status", SystemStatus.class);
     }
 
     public Settings retrieveSystemSettings() throws HttpRequestException, MessageParsingException {
-        return parseAndRethrow(doHttpRequest("/api/v2/settings", GET, null), Settings.class);
+        return retrieve(SETTINGS_PATH, Settings.class);
     }
 
     public void sendBlink(final BlinkRequest request) throws HttpRequestException {
-        doHttpRequest("/api/v2/blink", POST, serializeAndRethrow(request));
+        send("/api/v2/blink", POST, request);
     }
 
     public void updateSettings(final Settings settings) throws HttpRequestException {
-        doHttpRequest("/api/v2/settings", PUT, serializeAndRethrow(settings));
+        send(SETTINGS_PATH, PUT, settings);
     }
 
     public void setToken(final String token) {
         this.token = token;
     }
 
-    private String doHttpRequest(final String url, final String requestMethod, final String data)
+    /**
+     * @param connectTimeoutMillis time to wait for a connection, 10 seconds by default
+     * @param readTimeoutMillis time to wait for data of the response, 10 seconds by default
+     */
+    public void setTimeouts(final int connectTimeoutMillis, final int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @param metrics metrics to record the latency of requests in, or null to stop recording
+     */
+    public void setMetrics(final ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Performs a request and decodes the response body while it is being received.
+     */
+    private <T extends RestObject> T retrieve(final String url, final Class<T> clazz)
+            throws HttpRequestException, MessageParsingException {
+        return retrieveIfModified(url, clazz, null, null).getValue();
+    }
+
+    /**
+     * Performs a conditional request, which the device may answer with 304 Not Modified if the validators of an
+     * earlier response still match.
+     *
+     * @param etag ETag of an earlier response, or null
+     * @param lastModified Last-Modified of an earlier response, or null
+     */
+    <T extends RestObject> ConditionalResponse<T> retrieveIfModified(final String url, final Class<T> clazz,
+            final String etag, final String lastModified) throws HttpRequestException, MessageParsingException {
+        final HttpURLConnection connection = doHttpRequest(url, GET, null, etag, lastModified);
+        if (connection == null) {
+            throw new MessageParsingException(clazz.getSimpleName());
+        }
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new ConditionalResponse<>(null, etag, lastModified, true);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return new ConditionalResponse<>(RestJson.read(in, clazz), connection.getHeaderField("ETag"),
+                        connection.getHeaderField("Last-Modified"), false);
+            }
+        } catch (final HttpRequestException | MessageParsingException e) {
+            throw e;
+        } catch (final IOException e) {
+            throw new HttpRequestException(e);
+        }
+    }
+
+    /**
+     * Performs a request of which the response body is not needed. The body is read nevertheless, so that the
+     * connection can be kept alive.
+     */
+    private void send(final String url, final String requestMethod, final RestObject data)
             throws HttpRequestException {
-        LOG.debug("JSON {}", data);
+        final HttpURLConnection connection = doHttpRequest(url, requestMethod, data, null, null);
+        if (connection == null) {
+            return;
+        }
+        try (InputStream in = connection.getInputStream()) {
+            final byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        } catch (final IOException e) {
+            throw new HttpRequestException(e);
+        }
+    }
 
+    /**
+     * @return the connection, of which the response body can be read, or null if the device responded with an error
+     *         other than unauthorized or not found
+     */
+    private HttpURLConnection doHttpRequest(final String url, final String requestMethod, final RestObject data,
+            final String etag, final String lastModified) throws HttpRequestException {
+        final long start = System.nanoTime();
         try {
             final URL device = new URL(this.baseUrl + url);
             final HttpURLConnection connection = (HttpURLConnection) device.openConnection();
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
             if (!token.isEmpty()) {
                 connection.setRequestProperty("Authorization", "Bearer " + token);
             }
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
             // at the moment we only need GET method for heartbeat, but the there will be functionality that requires
             // POST
             switch (requestMethod) {
                 case POST:
                 case PUT:
+                    final byte[] body = RestJson.toUtf8(data);
+                    LOG.debug("JSON {}", new String(body, StandardCharsets.UTF_8));
                     connection.setDoOutput(true);
                     connection.addRequestProperty("Content-Type", "application/json");
                     connection.setRequestMethod(requestMethod);
-                    connection.addRequestProperty("Content-Length", String.valueOf(data.length()));
-                    try (OutputStreamWriter out = new OutputStreamWriter(connection.getOutputStream())) {
-                        out.write(data);
+                    // the body is buffered by the connection, which then sets Content-Length to its length in bytes,
+                    // and can retry the request when a kept-alive connection turns out to be closed
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(body);
                     }
                     break;
                 case DELETE:
@@ -119,18 +197,10 @@ public class ApiCaller {
             }
 
             final int responseCode = connection.getResponseCode();
+            recordRest(url, responseCode, start);
             LOG.debug("Response code = {}", responseCode);
             if (responseCode < 400) {
-                try (final BufferedReader inputBuffer = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream()))) {
-                    final StringBuilder result = new StringBuilder();
-                    String line;
-                    while ((line = inputBuffer.readLine()) != null) {
-                        result.append(line);
-                    }
-                    LOG.debug("Result: {}", result.toString());
-                    return result.toString();
-                }
+                return connection;
             } else if (responseCode == HttpURLConnection.HTTP_FORBIDDEN || responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
                 throw new UnauthorizedException("Unauthorized access to Renos API.");
             } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
@@ -138,12 +208,20 @@ public class ApiCaller {
                         "Endpoint not found." + " Please make sure you are connected to a compatible device.");
             } else {
                 LOG.debug("Message: {}", connection.getResponseMessage());
-                return connection.getResponseMessage();
+                return null;
             }
         } catch (final HttpRequestException e) {
             throw e;
         } catch (final IOException e) {
+            recordRest(url, 0, start);
             throw new HttpRequestException(e);
         }
     }
+
+    private void recordRest(final String url, final int status, final long start) {
+        final ClientMetrics clientMetrics = metrics;
+        if (clientMetrics != null) {
+            clientMetrics.recordRest(url, status, System.nanoTime() - start);
+        }
+    }
 }
@@ -0,0 +1,209 @@
+package com.nedap.retail.example.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.rest.message.*;
+
+/**
+ * Asynchronous variant of {@link ApiCaller}. Calls return immediately with a future, which completes on a thread of
+ * the Jetty client, or fails with the same exceptions {@link ApiCaller} throws. Connections to the device are kept
+ * alive and pooled by the Jetty client; one Jetty client can be shared by the callers of many devices.
+ */
+public class AsyncApiCaller {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncApiCaller.class);
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_DEVICE = 4;
+    private static final int MAX_RESPONSE_SIZE = 2 * 1024 * 1024;
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final boolean sharedClient;
+
+    private volatile long requestTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile String token = "";
+
+    /**
+     * Creates a caller with its own Jetty client, which is started by {@link #start()} and stopped by {@link #stop()}.
+     *
+     * @param baseUrl base URL of the device, e.g. http://localhost:8081
+     */
+    public AsyncApiCaller(final String baseUrl) {
+        this(baseUrl, createHttpClient(DEFAULT_MAX_CONNECTIONS_PER_DEVICE, DEFAULT_TIMEOUT_MILLIS), false);
+    }
+
+    /**
+     * Creates a caller which sends its requests through a shared Jetty client. The caller is responsible for starting
+     * and stopping it, see {@link #createHttpClient(int, long)}.
+     *
+     * @param baseUrl base URL of the device, e.g. http://localhost:8081
+     * @param httpClient shared Jetty client
+     */
+    public AsyncApiCaller(final String baseUrl, final HttpClient httpClient) {
+        this(baseUrl, httpClient, true);
+    }
+
+    private AsyncApiCaller(final String baseUrl, final HttpClient httpClient, final boolean sharedClient) {
+        // make sure baseUrl does not end with a slash
+        if (baseUrl.endsWith("/")) {
+            throw new IllegalArgumentException("The given URL should not have a trailing \"/\".");
+        }
+
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.sharedClient = sharedClient;
+    }
+
+    /**
+     * Creates a Jetty client suitable for sharing between the callers of many devices.
+     *
+     * @param maxConnectionsPerDevice maximum number of keep-alive connections to a single device
+     * @param connectTimeoutMillis timeout for establishing a connection
+     * @return a Jetty client which still needs to be started
+     */
+    public static HttpClient createHttpClient(final int maxConnectionsPerDevice, final long connectTimeoutMillis) {
+        final HttpClient client = new HttpClient();
+        client.setMaxConnectionsPerDestination(maxConnectionsPerDevice);
+        client.setConnectTimeout(connectTimeoutMillis);
+        client.setFollowRedirects(false);
+        return client;
+    }
+
+    /**
+     * Starts the Jetty client if it is owned by this caller.
+     *
+     * @throws Exception
+     */
+    public void start() throws Exception {
+        if (!sharedClient) {
+            httpClient.start();
+        }
+    }
+
+    /**
+     * Stops the Jetty client if it is owned by this caller.
+     */
+    public void stop() {
+        if (!sharedClient) {
+            try {
+                httpClient.stop();
+            } catch (final Exception e) {
+                LOG.error("There was an error while trying to stop the HTTP client", e);
+            }
+        }
+    }
+
+    public void setToken(final String token) {
+        this.token = token;
+    }
+
+    /**
+     * @param requestTimeoutMillis total time a call may take, including connecting, before it fails
+     */
+    public void setRequestTimeout(final long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public CompletableFuture<Void> heartbeat() {
+        return doHttpRequest("/api/v2/heartbeat", HttpMethod.GET, null).thenApply(body -> null);
+    }
+
+    public CompletableFuture<SystemInfo> retrieveSystemInfo() {
+        return get("/api/v2/info", SystemInfo.class);
+    }
+
+    public CompletableFuture<GroupInfo> retrieveGroupInfo() {
+        return get("/api/v2/group_info", GroupInfo.class);
+    }
+
+    public CompletableFuture<SystemStatus> retrieveSystemStatus() {
+        return get("/api/v2/status", SystemStatus.class);
+    }
+
+    public CompletableFuture<Settings> retrieveSystemSettings() {
+        return get("/api/v2/settings", Settings.class);
+    }
+
+    public CompletableFuture<Void> sendBlink(final BlinkRequest request) {
+        return doHttpRequest("/api/v2/blink", HttpMethod.POST, request).thenApply(body -> null);
+    }
+
+    public CompletableFuture<Void> updateSettings(final Settings settings) {
+        return doHttpRequest("/api/v2/settings", HttpMethod.PUT, settings).thenApply(body -> null);
+    }
+
+    private <T extends RestObject> CompletableFuture<T> get(final String url, final Class<T> clazz) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        doHttpRequest(url, HttpMethod.GET, null).whenComplete((body, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            try {
+                result.complete(RestJson.read(new ByteArrayInputStream(body), clazz));
+            } catch (final IOException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<byte[]> doHttpRequest(final String url, final HttpMethod method,
+            final RestObject data) {
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        final Request request = httpClient.newRequest(baseUrl + url).method(method)
+                .timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (!token.isEmpty()) {
+            request.header(HttpHeader.AUTHORIZATION, "Bearer " + token);
+        }
+        if (data != null) {
+            final byte[] body = RestJson.toUtf8(data);
+            LOG.debug("JSON {}", new String(body, StandardCharsets.UTF_8));
+            request.content(new BytesContentProvider("application/json", body));
+        }
+
+        request.send(new BufferingResponseListener(MAX_RESPONSE_SIZE) {
+            @Override
+            public void onComplete(final Result response) {
+                if (response.isFailed()) {
+                    result.completeExceptionally(new HttpRequestException(response.getFailure()));
+                    return;
+                }
+                final int responseCode = response.getResponse().getStatus();
+                LOG.debug("Response code = {}", responseCode);
+                if (responseCode < 400) {
+                    result.complete(getContent());
+                } else if (responseCode == HttpStatus.FORBIDDEN_403 || responseCode == HttpStatus.UNAUTHORIZED_401) {
+                    result.completeExceptionally(new UnauthorizedException("Unauthorized access to Renos API."));
+                } else if (responseCode == HttpStatus.NOT_FOUND_404) {
+                    result.completeExceptionally(new NotFoundException(
+                            "Endpoint not found." + " Please make sure you are connected to a compatible device."));
+                } else {
+                    LOG.debug("Message: {}", response.getResponse().getReason());
+                    result.complete(new byte[0]);
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,281 @@
+package com.nedap.retail.example.rest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.rest.message.BlinkRequest;
+
+/**
+ * Sends blink requests to one device without flooding it. Requests are held back for a short while, in which requests
+ * that blink the same way, with the same lights and sound switched on, are merged into one, blinking the union of their
+ * groups and units for the largest count and hold time. Requests are sent one at a time and at most at the rate of a
+ * token bucket; while they wait, they keep absorbing new requests. When too many requests that cannot be merged are
+ * waiting, new ones are dropped.
+ */
+public class BlinkScheduler implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlinkScheduler.class);
+
+    private static final long DEFAULT_MAX_HOLD_MILLIS = 200;
+    private static final int DEFAULT_MAX_MERGED = 50;
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 2;
+    private static final int DEFAULT_BURST = 2;
+    private static final int MAX_PENDING = 16;
+
+    private final ApiCaller api;
+    private final ScheduledExecutorService scheduler;
+    private final long maxHoldMillis;
+    private final int maxMerged;
+    private final TokenBucket bucket;
+
+    /** Requests waiting to be sent, oldest first. Guarded by this. */
+    private final List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushFuture;
+    private boolean sending;
+    private boolean closed;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BlinkScheduler(final ApiCaller api, final ScheduledExecutorService scheduler) {
+        this(api, scheduler, DEFAULT_MAX_HOLD_MILLIS, DEFAULT_MAX_MERGED, DEFAULT_REQUESTS_PER_SECOND,
+                DEFAULT_BURST);
+    }
+
+    /**
+     * @param api caller of the device
+     * @param scheduler scheduler to send on; requests are sent by blocking calls
+     * @param maxHoldMillis time a request is held back to merge others into it
+     * @param maxMerged number of requests merged into one after which it is sent without waiting longer
+     * @param requestsPerSecond rate at which requests are sent at most
+     * @param burst number of requests that can be sent at once after a quiet period
+     */
+    public BlinkScheduler(final ApiCaller api, final ScheduledExecutorService scheduler, final long maxHoldMillis,
+            final int maxMerged, final double requestsPerSecond, final int burst) {
+        this.api = api;
+        this.scheduler = scheduler;
+        this.maxHoldMillis = maxHoldMillis;
+        this.maxMerged = maxMerged;
+        this.bucket = new TokenBucket(requestsPerSecond, burst);
+    }
+
+    /**
+     * Schedules a blink request. Returns immediately.
+     *
+     * @param request request to send; not modified
+     */
+    public synchronized void submit(final BlinkRequest request) {
+        submitted.incrementAndGet();
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        for (final Pending waiting : pending) {
+            if (waiting.count < maxMerged && canMerge(waiting.request, request)) {
+                merge(waiting.request, request);
+                waiting.count++;
+                merged.incrementAndGet();
+                if (waiting.count >= maxMerged) {
+                    waiting.due = System.nanoTime();
+                    scheduleFlush();
+                }
+                return;
+            }
+        }
+        if (pending.size() >= MAX_PENDING) {
+            dropped.incrementAndGet();
+            LOG.debug("Dropped blink request, {} requests waiting", pending.size());
+            return;
+        }
+        pending.add(new Pending(copy(request), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxHoldMillis)));
+        scheduleFlush();
+    }
+
+    /**
+     * Schedules sending the request due first. Only one request is in flight at a time, so nothing is scheduled while
+     * sending; the next flush is scheduled once the request completed.
+     */
+    private void scheduleFlush() {
+        if (sending || pending.isEmpty() || closed) {
+            return;
+        }
+        final long delay = Math.max(0, pending.get(nextDue()).due - System.nanoTime());
+        if (flushFuture != null) {
+            if (flushFuture.getDelay(TimeUnit.NANOSECONDS) <= delay) {
+                return;
+            }
+            flushFuture.cancel(false);
+        }
+        flushFuture = scheduler.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void flush() {
+        final BlinkRequest request;
+        synchronized (this) {
+            flushFuture = null;
+            if (sending || pending.isEmpty() || closed) {
+                return;
+            }
+            final int next = nextDue();
+            if (pending.get(next).due - System.nanoTime() > 0) {
+                scheduleFlush();
+                return;
+            }
+            final long wait = bucket.tryAcquire();
+            if (wait > 0) {
+                // merging goes on while waiting for a permit
+                flushFuture = scheduler.schedule(this::flush, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+            request = pending.remove(next).request;
+            sending = true;
+        }
+
+        try {
+            api.sendBlink(request);
+            sent.incrementAndGet();
+        } catch (final HttpRequestException | RuntimeException e) {
+            failed.incrementAndGet();
+            LOG.warn("Could not send blink request, reason {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                sending = false;
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * @return index of the pending request due first, the oldest of those due at the same time
+     */
+    private int nextDue() {
+        int next = 0;
+        for (int i = 1; i < pending.size(); i++) {
+            if (pending.get(i).due - pending.get(next).due < 0) {
+                next = i;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Requests can be merged when they blink the same way, so that only what blinks and for how long changes.
+     */
+    private static boolean canMerge(final BlinkRequest a, final BlinkRequest b) {
+        // lights and sound apply to all groups and units of a request, so they cannot be combined
+        return Objects.equals(a.getLight(), b.getLight()) && Objects.equals(a.getSound(), b.getSound())
+                && Objects.equals(a.getOnTime(), b.getOnTime()) && Objects.equals(a.getOffTime(), b.getOffTime())
+                && Objects.equals(a.getColor(), b.getColor())
+                && Objects.equals(a.getAudioFileName(), b.getAudioFileName())
+                && Objects.equals(a.getSoundPeriod(), b.getSoundPeriod())
+                && Objects.equals(a.getSoundVolume(), b.getSoundVolume());
+    }
+
+    private static void merge(final BlinkRequest into, final BlinkRequest from) {
+        into.setGroups(union(into.getGroups(), from.getGroups()));
+        into.setUnits(union(into.getUnits(), from.getUnits()));
+        into.setCount(max(into.getCount(), from.getCount()));
+        into.setLightsHoldTime(max(into.getLightsHoldTime(), from.getLightsHoldTime()));
+        into.setNumOfSoundRepeats(max(into.getNumOfSoundRepeats(), from.getNumOfSoundRepeats()));
+    }
+
+    /**
+     * @return the union, or null if either is null, as a request without groups or units blinks all of them
+     */
+    private static <T> List<T> union(final List<T> a, final List<T> b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        final Set<T> union = new LinkedHashSet<>(a);
+        union.addAll(b);
+        return new ArrayList<>(union);
+    }
+
+    private static Integer max(final Integer a, final Integer b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : Math.max(a, b);
+    }
+
+    private static BlinkRequest copy(final BlinkRequest request) {
+        final BlinkRequest copy = new BlinkRequest(request.getOnTime(), request.getOffTime(), request.getCount(),
+                request.getLightsHoldTime(), request.getLight(), request.getSound(), request.getColor(),
+                request.getAudioFileName(), request.getSoundPeriod(), request.getNumOfSoundRepeats(),
+                request.getSoundVolume());
+        copy.setGroups(request.getGroups() != null ? new ArrayList<>(request.getGroups()) : null);
+        copy.setUnits(request.getUnits() != null ? new ArrayList<>(request.getUnits()) : null);
+        return copy;
+    }
+
+    /**
+     * Stops sending; requests still waiting are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        dropped.addAndGet(pending.size());
+        pending.clear();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return number of requests merged into another request instead of being sent
+     */
+    public long getMergedCount() {
+        return merged.get();
+    }
+
+    /**
+     * @return number of requests dropped because too many were waiting or the scheduler was closed
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private static final class Pending {
+
+        private final BlinkRequest request;
+        private long due;
+        /** Number of requests this one stands for. */
+        private int count = 1;
+
+        Pending(final BlinkRequest request, final long due) {
+            this.request = request;
+            this.due = due;
+        }
+    }
+}
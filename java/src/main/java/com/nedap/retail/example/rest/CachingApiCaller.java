@@ -0,0 +1,186 @@
+package com.nedap.retail.example.rest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.rest.message.*;
+
+/**
+ * {@link ApiCaller} which caches the responses of the endpoints that rarely change: system info, group info and
+ * settings. A cached response is used until its time to live has passed; after that it is revalidated with the
+ * ETag and Last-Modified validators of the device, if it sends them, so that an unchanged response is not transferred
+ * again. Concurrent calls for the same endpoint share one request to the device. Settings are invalidated by
+ * {@link #updateSettings(Settings)}.
+ * <p>
+ * Cached objects are shared between callers and must not be modified.
+ */
+public class CachingApiCaller extends ApiCaller {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingApiCaller.class);
+
+    private static final long DEFAULT_SYSTEM_INFO_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEFAULT_GROUP_INFO_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long DEFAULT_SETTINGS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Map<String, Long> timesToLive = new ConcurrentHashMap<>();
+    private final Map<String, Entry<?>> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry<?>>> inFlight = new ConcurrentHashMap<>();
+    /** Incremented on every invalidation, so that a response requested before it is not cached after it. */
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingApiCaller(final String baseUrl) {
+        super(baseUrl);
+        timesToLive.put(SYSTEM_INFO_PATH, DEFAULT_SYSTEM_INFO_TTL_MILLIS);
+        timesToLive.put(GROUP_INFO_PATH, DEFAULT_GROUP_INFO_TTL_MILLIS);
+        timesToLive.put(SETTINGS_PATH, DEFAULT_SETTINGS_TTL_MILLIS);
+    }
+
+    public void setSystemInfoTimeToLive(final long millis) {
+        timesToLive.put(SYSTEM_INFO_PATH, millis);
+    }
+
+    public void setGroupInfoTimeToLive(final long millis) {
+        timesToLive.put(GROUP_INFO_PATH, millis);
+    }
+
+    public void setSettingsTimeToLive(final long millis) {
+        timesToLive.put(SETTINGS_PATH, millis);
+    }
+
+    @Override
+    public SystemInfo retrieveSystemInfo() throws HttpRequestException, MessageParsingException {
+        return cached(SYSTEM_INFO_PATH, SystemInfo.class);
+    }
+
+    @Override
+    public GroupInfo retrieveGroupInfo() throws HttpRequestException, MessageParsingException {
+        return cached(GROUP_INFO_PATH, GroupInfo.class);
+    }
+
+    @Override
+    public Settings retrieveSystemSettings() throws HttpRequestException, MessageParsingException {
+        return cached(SETTINGS_PATH, Settings.class);
+    }
+
+    @Override
+    public void updateSettings(final Settings settings) throws HttpRequestException {
+        try {
+            super.updateSettings(settings);
+        } finally {
+            // also when the update failed, as it may have been applied nevertheless
+            invalidate(SETTINGS_PATH);
+        }
+    }
+
+    @Override
+    public void setToken(final String token) {
+        super.setToken(token);
+        invalidateAll();
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private void invalidate(final String url) {
+        generation.incrementAndGet();
+        cache.remove(url);
+    }
+
+    private <T extends RestObject> T cached(final String url, final Class<T> clazz)
+            throws HttpRequestException, MessageParsingException {
+        final Entry<?> entry = cache.get(url);
+        if (entry != null && entry.isFresh()) {
+            return clazz.cast(entry.value);
+        }
+
+        final CompletableFuture<Entry<?>> request = new CompletableFuture<>();
+        final CompletableFuture<Entry<?>> pending = inFlight.putIfAbsent(url, request);
+        if (pending != null) {
+            return clazz.cast(await(pending).value);
+        }
+
+        try {
+            final Entry<T> fetched = fetch(url, clazz, entry);
+            request.complete(fetched);
+            return fetched.value;
+        } catch (final HttpRequestException | MessageParsingException | RuntimeException e) {
+            request.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(url, request);
+        }
+    }
+
+    private <T extends RestObject> Entry<T> fetch(final String url, final Class<T> clazz, final Entry<?> stale)
+            throws HttpRequestException, MessageParsingException {
+        final long startGeneration = generation.get();
+        final long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timesToLive.get(url));
+
+        final ConditionalResponse<T> response = stale != null
+                ? retrieveIfModified(url, clazz, stale.etag, stale.lastModified)
+                : retrieveIfModified(url, clazz, null, null);
+
+        final Entry<T> entry;
+        if (response.isNotModified() && stale != null) {
+            LOG.debug("Cached response of {} is still valid", url);
+            entry = new Entry<>(clazz.cast(stale.value), stale.etag, stale.lastModified, expiresAt);
+        } else {
+            entry = new Entry<>(response.getValue(), response.getEtag(), response.getLastModified(), expiresAt);
+        }
+        if (generation.get() == startGeneration) {
+            cache.put(url, entry);
+        }
+        return entry;
+    }
+
+    private static Entry<?> await(final CompletableFuture<Entry<?>> pending)
+            throws HttpRequestException, MessageParsingException {
+        try {
+            return pending.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpRequestException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof HttpRequestException) {
+                throw (HttpRequestException) cause;
+            } else if (cause instanceof MessageParsingException) {
+                throw (MessageParsingException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new HttpRequestException(cause);
+        }
+    }
+
+    private static final class Entry<T extends RestObject> {
+
+        private final T value;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAtNanos;
+
+        Entry(final T value, final String etag, final String lastModified, final long expiresAtNanos) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - expiresAtNanos < 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.nedap.retail.example.rest;
+
+import com.nedap.retail.renos.api.v2.rest.message.RestObject;
+
+/**
+ * Result of a conditional GET: either a new value with its validators, or confirmation that the earlier value is
+ * still current.
+ */
+final class ConditionalResponse<T extends RestObject> {
+
+    private final T value;
+    private final String etag;
+    private final String lastModified;
+    private final boolean notModified;
+
+    ConditionalResponse(final T value, final String etag, final String lastModified, final boolean notModified) {
+        this.value = value;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.notModified = notModified;
+    }
+
+    /**
+     * @return the decoded response, or null if not modified
+     */
+    T getValue() {
+        return value;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    boolean isNotModified() {
+        return notModified;
+    }
+}
@@ -0,0 +1,78 @@
+package com.nedap.retail.example.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.nedap.retail.renos.api.v2.rest.message.RestObject;
+import com.nedap.retail.renos.json.EpochMillisDateTypeAdapter;
+import com.nedap.retail.renos.json.OmitNullTypeAdapterFactory;
+
+/**
+ * Streaming UTF-8 (de)serialization of REST messages, configured the same as
+ * {@link com.nedap.retail.renos.json.JsonMapper}, which only works on strings.
+ */
+final class RestJson {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().serializeNulls()
+            .registerTypeAdapter(Date.class, new EpochMillisDateTypeAdapter())
+            .registerTypeAdapterFactory(new OmitNullTypeAdapterFactory()).create();
+
+    private RestJson() {
+    }
+
+    /**
+     * Decodes a message straight from a response stream.
+     *
+     * @param in response body, in UTF-8
+     * @param clazz type of the message
+     * @return the decoded message
+     * @throws MessageParsingException if the body is not a valid message
+     * @throws HttpRequestException if the body could not be read
+     */
+    static <T extends RestObject> T read(final InputStream in, final Class<T> clazz)
+            throws MessageParsingException, HttpRequestException {
+        final T result;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            result = GSON.fromJson(reader, clazz);
+        } catch (final JsonParseException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException && !(cause instanceof MalformedJsonException)
+                    && !(cause instanceof EOFException)) {
+                throw new HttpRequestException(cause);
+            }
+            throw new MessageParsingException(clazz.getSimpleName());
+        } catch (final IOException e) {
+            throw new HttpRequestException(e);
+        }
+        if (result == null) {
+            throw new MessageParsingException(clazz.getSimpleName());
+        }
+        return result;
+    }
+
+    /**
+     * @return the message as UTF-8 encoded JSON
+     */
+    static byte[] toUtf8(final RestObject object) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            GSON.toJson(object, writer);
+        } catch (final IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,75 @@
+package com.nedap.retail.example.rfid;
+
+/**
+ * Packs hexadecimal EPCs of up to 128 bits (e.g. SGTIN-96) into two longs, so they can be stored and compared without
+ * {@link String} objects. The number of hex digits is kept separately to preserve leading zeros.
+ */
+public final class EpcCodec {
+
+    /** Maximum number of hex digits that fit in two longs. */
+    public static final int MAX_DIGITS = 32;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private EpcCodec() {
+    }
+
+    /**
+     * @param epc hex EPC as received from Renos
+     * @return true if the EPC consists of 1 to {@link #MAX_DIGITS} hex digits
+     */
+    public static boolean isPackable(final String epc) {
+        if (epc == null || epc.isEmpty() || epc.length() > MAX_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < epc.length(); i++) {
+            if (Character.digit(epc.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return all digits except the last 16, as a number
+     */
+    public static long high(final String epc) {
+        return parse(epc, 0, Math.max(0, epc.length() - 16));
+    }
+
+    /**
+     * @return the last 16 digits, as a number
+     */
+    public static long low(final String epc) {
+        return parse(epc, Math.max(0, epc.length() - 16), epc.length());
+    }
+
+    private static long parse(final String epc, final int from, final int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = (value << 4) | Character.digit(epc.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * @return upper case hex EPC of the given number of digits
+     */
+    public static String toHex(final long high, final long low, final int digits) {
+        final char[] chars = new char[digits];
+        for (int i = digits - 1, shift = 0; i >= 0; i--, shift += 4) {
+            final long source = shift < 64 ? low >>> shift : high >>> (shift - 64);
+            chars[i] = HEX_DIGITS[(int) (source & 0xF)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Mixes a packed EPC into a well distributed hash code.
+     */
+    public static int hash(final long high, final long low, final int digits) {
+        long h = high * 0x9E3779B97F4A7C15L + low;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L + digits;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,338 @@
+package com.nedap.retail.example.rfid;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.RfidMoveEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfidObservationEvent;
+
+/**
+ * Suppresses repeated sightings of the same EPC at the same group and aisle within a time window. A sighting is a
+ * duplicate if the same tag was seen at the same place less than the window ago; a tag that stays in view therefore
+ * stays suppressed, and is reported to the {@link ExpiryListener} with its first and last sighting once it has not
+ * been seen for the length of the window.
+ * <p>
+ * Entries live in a primitive open-addressing table keyed by the packed EPC (see {@link EpcCodec}). Expired entries
+ * are removed incrementally, a few slots per call, so there is never a full sweep. EPCs which cannot be packed are
+ * never suppressed.
+ */
+public class EpcDeduplicator {
+
+    /** Number of EPCs tracked unless configured otherwise. */
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SWEEP_STEPS = 2;
+    private static final int NO_AISLE = Integer.MIN_VALUE;
+
+    /**
+     * Notified when an entry leaves the window.
+     */
+    public interface ExpiryListener {
+
+        /**
+         * @param epc hex EPC, in upper case
+         * @param group group in which the EPC was seen, or null
+         * @param aisle aisle in which the EPC was seen, or null
+         * @param firstSeen time of the first sighting, in epoch millis
+         * @param lastSeen time of the last sighting, in epoch millis
+         * @param count number of sightings, including suppressed ones
+         */
+        void onExpired(String epc, String group, Integer aisle, long firstSeen, long lastSeen, int count);
+    }
+
+    private final long windowMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final ExpiryListener expiryListener;
+
+    // open-addressing table, a slot is empty when its digit count is 0
+    private int mask;
+    private int size;
+    private int sweepCursor;
+    private long[] highs;
+    private long[] lows;
+    private byte[] digits;
+    private int[] hashes;
+    private String[] groups;
+    private int[] aisles;
+    private long[] firstSeen;
+    private long[] lastSeen;
+    private int[] counts;
+
+    private long passed;
+    private long suppressed;
+    private long overflowed;
+
+    /**
+     * @param windowMillis time in which repeated sightings are suppressed
+     */
+    public EpcDeduplicator(final long windowMillis) {
+        this(windowMillis, DEFAULT_MAX_ENTRIES, System::currentTimeMillis, null);
+    }
+
+    /**
+     * @param windowMillis time in which repeated sightings are suppressed
+     * @param maxEntries maximum number of EPCs tracked; when reached, new EPCs are passed without tracking
+     * @param clock source of the current time in epoch millis
+     * @param expiryListener notified when an entry leaves the window, may be null
+     */
+    public EpcDeduplicator(final long windowMillis, final int maxEntries, final LongSupplier clock,
+            final ExpiryListener expiryListener) {
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.expiryListener = expiryListener;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(final int capacity) {
+        mask = capacity - 1;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        digits = new byte[capacity];
+        hashes = new int[capacity];
+        groups = new String[capacity];
+        aisles = new int[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Removes EPCs from an {@link RfidObservationEvent} or {@link RfidMoveEvent} that were already seen within the
+     * window. Other events are left untouched. EPCs without group or aisle inherit those of the event.
+     *
+     * @param event event to filter in place
+     * @return number of EPCs left in the event
+     */
+    public synchronized int filter(final Event event) {
+        final List<Epc> epcs;
+        if (event instanceof RfidObservationEvent) {
+            epcs = ((RfidObservationEvent) event).getEpcs();
+        } else if (event instanceof RfidMoveEvent) {
+            epcs = ((RfidMoveEvent) event).getEpcs();
+        } else {
+            return 0;
+        }
+        if (epcs == null) {
+            return 0;
+        }
+        final long now = clock.getAsLong();
+        for (final Iterator<Epc> it = epcs.iterator(); it.hasNext();) {
+            final Epc epc = it.next();
+            final String group = epc.getGroup() != null ? epc.getGroup() : event.getGroup();
+            final Integer aisle = epc.getAisle() != null ? epc.getAisle() : event.getAisle();
+            if (record(epc.getEpc(), group, aisle, now)) {
+                it.remove();
+            }
+        }
+        return epcs.size();
+    }
+
+    /**
+     * Records a sighting.
+     *
+     * @return true if the same EPC was seen at the same group and aisle within the window
+     */
+    public synchronized boolean isDuplicate(final String epc, final String group, final Integer aisle) {
+        return record(epc, group, aisle, clock.getAsLong());
+    }
+
+    private boolean record(final String epc, final String group, final Integer aisle, final long now) {
+        sweep(SWEEP_STEPS, now);
+        if (!EpcCodec.isPackable(epc)) {
+            passed++;
+            return false;
+        }
+        final long high = EpcCodec.high(epc);
+        final long low = EpcCodec.low(epc);
+        final int length = epc.length();
+        final int aisleValue = aisle != null ? aisle : NO_AISLE;
+        final int hash = EpcCodec.hash(high, low, length) * 31 + Objects.hashCode(group) * 17 + aisleValue;
+
+        int slot = hash & mask;
+        while (digits[slot] != 0) {
+            if (hashes[slot] == hash && highs[slot] == high && lows[slot] == low && digits[slot] == length
+                    && aisles[slot] == aisleValue && Objects.equals(groups[slot], group)) {
+                if (now - lastSeen[slot] < windowMillis) {
+                    lastSeen[slot] = now;
+                    counts[slot]++;
+                    suppressed++;
+                    return true;
+                }
+                // seen before, but outside the window: report the old visit and start a new one
+                expire(slot);
+                startVisit(slot, now);
+                passed++;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size >= maxEntries) {
+            overflowed++;
+            passed++;
+            return false;
+        }
+        highs[slot] = high;
+        lows[slot] = low;
+        digits[slot] = (byte) length;
+        hashes[slot] = hash;
+        groups[slot] = group;
+        aisles[slot] = aisleValue;
+        startVisit(slot, now);
+        size++;
+        passed++;
+        if (size > (mask + 1) * 3 / 4) {
+            grow();
+        }
+        return false;
+    }
+
+    private void startVisit(final int slot, final long now) {
+        firstSeen[slot] = now;
+        lastSeen[slot] = now;
+        counts[slot] = 1;
+    }
+
+    /**
+     * Examines a few slots from where the previous sweep stopped and removes expired entries.
+     */
+    private void sweep(final int steps, final long now) {
+        for (int i = 0; i < steps && size > 0; i++) {
+            final int slot = sweepCursor;
+            if (digits[slot] != 0 && now - lastSeen[slot] >= windowMillis) {
+                expire(slot);
+                removeAt(slot);
+                // an entry may have been shifted into this slot, look at it again next time
+            } else {
+                sweepCursor = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Removes expired entries from the whole table, e.g. before shutting down.
+     */
+    public synchronized void expireAll() {
+        final long now = clock.getAsLong();
+        int examined = 0;
+        while (examined <= mask && size > 0) {
+            final int slot = sweepCursor;
+            if (digits[slot] != 0 && now - lastSeen[slot] >= windowMillis) {
+                expire(slot);
+                removeAt(slot);
+            } else {
+                sweepCursor = (slot + 1) & mask;
+                examined++;
+            }
+        }
+    }
+
+    private void expire(final int slot) {
+        if (expiryListener != null) {
+            expiryListener.onExpired(EpcCodec.toHex(highs[slot], lows[slot], digits[slot]), groups[slot],
+                    aisles[slot] != NO_AISLE ? aisles[slot] : null, firstSeen[slot], lastSeen[slot], counts[slot]);
+        }
+    }
+
+    /**
+     * Backward-shift deletion, which keeps probe sequences intact without tombstones.
+     */
+    private void removeAt(final int slot) {
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (digits[i] == 0) {
+                break;
+            }
+            final int ideal = hashes[i] & mask;
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        digits[hole] = 0;
+        groups[hole] = null;
+        size--;
+    }
+
+    private void move(final int from, final int to) {
+        highs[to] = highs[from];
+        lows[to] = lows[from];
+        digits[to] = digits[from];
+        hashes[to] = hashes[from];
+        groups[to] = groups[from];
+        aisles[to] = aisles[from];
+        firstSeen[to] = firstSeen[from];
+        lastSeen[to] = lastSeen[from];
+        counts[to] = counts[from];
+    }
+
+    private void grow() {
+        final long[] oldHighs = highs;
+        final long[] oldLows = lows;
+        final byte[] oldDigits = digits;
+        final int[] oldHashes = hashes;
+        final String[] oldGroups = groups;
+        final int[] oldAisles = aisles;
+        final long[] oldFirstSeen = firstSeen;
+        final long[] oldLastSeen = lastSeen;
+        final int[] oldCounts = counts;
+
+        allocate(oldDigits.length * 2);
+        sweepCursor = 0;
+        for (int from = 0; from < oldDigits.length; from++) {
+            if (oldDigits[from] == 0) {
+                continue;
+            }
+            int slot = oldHashes[from] & mask;
+            while (digits[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            highs[slot] = oldHighs[from];
+            lows[slot] = oldLows[from];
+            digits[slot] = oldDigits[from];
+            hashes[slot] = oldHashes[from];
+            groups[slot] = oldGroups[from];
+            aisles[slot] = oldAisles[from];
+            firstSeen[slot] = oldFirstSeen[from];
+            lastSeen[slot] = oldLastSeen[from];
+            counts[slot] = oldCounts[from];
+        }
+    }
+
+    /**
+     * @return number of EPCs currently tracked
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of sightings that were passed on
+     */
+    public synchronized long getPassedCount() {
+        return passed;
+    }
+
+    /**
+     * @return number of sightings that were suppressed as duplicates
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressed;
+    }
+
+    /**
+     * @return number of sightings passed without tracking because the table was full
+     */
+    public synchronized long getOverflowCount() {
+        return overflowed;
+    }
+}
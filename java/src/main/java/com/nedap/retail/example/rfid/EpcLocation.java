@@ -0,0 +1,80 @@
+package com.nedap.retail.example.rfid;
+
+import java.util.List;
+
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Where and when an EPC was last seen, as kept by {@link EpcLocationStore}.
+ */
+public final class EpcLocation {
+
+    private final String epc;
+    private final long time;
+    private final String device;
+    private final String group;
+    private final List<Integer> units;
+    private final Integer aisle;
+    private final Epc.EasStatus easStatus;
+    private final Event.Direction direction;
+
+    EpcLocation(final String epc, final long time, final String device, final String group, final List<Integer> units,
+            final Integer aisle, final Epc.EasStatus easStatus, final Event.Direction direction) {
+        this.epc = epc;
+        this.time = time;
+        this.device = device;
+        this.group = group;
+        this.units = units;
+        this.aisle = aisle;
+        this.easStatus = easStatus;
+        this.direction = direction;
+    }
+
+    /**
+     * @return hex EPC, in upper case
+     */
+    public String getEpc() {
+        return epc;
+    }
+
+    /**
+     * @return time of the last sighting, in epoch millis
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return device that saw the EPC last
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @return unmodifiable units, or null
+     */
+    public List<Integer> getUnits() {
+        return units;
+    }
+
+    public Integer getAisle() {
+        return aisle;
+    }
+
+    public Epc.EasStatus getEasStatus() {
+        return easStatus;
+    }
+
+    /**
+     * @return direction of the last RFID move event of the EPC, or null if it was only observed
+     */
+    public Event.Direction getDirection() {
+        return direction;
+    }
+}
@@ -0,0 +1,613 @@
+package com.nedap.retail.example.rfid;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.RfidMoveEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfidObservationEvent;
+
+/**
+ * Last known location of every EPC in RFID observation and move events: time, device, group, units, aisle, EAS
+ * status and the direction of its last move, so that where a tag was last seen is known without asking a database.
+ * Add it as a sink of the clients; other events are ignored.
+ * <p>
+ * The store is bounded, and its tables are allocated up front for the maximum number of EPCs, so its heap use is fixed
+ * at about 43 bytes per EPC, see {@link #getTableBytes()}. When a segment is full, the least recently seen of a
+ * few sampled EPCs makes room, and EPCs not seen for the time to live are removed a few slots per update.
+ * <p>
+ * Entries live in primitive open-addressing tables keyed by the packed EPC (see {@link EpcCodec}), split over
+ * segments which each have a {@link StampedLock}. Lookups of one EPC read optimistically and only lock if they raced
+ * with an update of the same segment. Device, group and units are kept as the id of a distinct place, as there are few
+ * of them. EPCs which cannot be packed are not stored.
+ */
+public class EpcLocationStore implements EventSink {
+
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private static final int SAMPLE_SIZE = 8;
+    private static final int SWEEP_STEPS = 2;
+    private static final int NO_VALUE = -1;
+
+    // a slot is four longs: the packed EPC, the time and the other fields packed by meta()
+    private static final int SLOT_LONGS = 4;
+    private static final int HIGH = 0;
+    private static final int LOW = 1;
+    private static final int TIME = 2;
+    private static final int META = 3;
+    private static final int DIGITS_BITS = 6;
+    private static final int ENUM_BITS = 4;
+    private static final int PLACE_BITS = 16;
+    private static final int STATUS_SHIFT = DIGITS_BITS;
+    private static final int DIRECTION_SHIFT = STATUS_SHIFT + ENUM_BITS;
+    private static final int PLACE_SHIFT = DIRECTION_SHIFT + ENUM_BITS;
+    private static final long AISLE_PRESENT = 1L << (PLACE_SHIFT + PLACE_BITS);
+    /** Places that fit in the bits of a slot, as their ids are stored plus one. */
+    private static final int MAX_PLACES = (1 << PLACE_BITS) - 1;
+    private static final Epc.EasStatus[] EAS_STATUSES = Epc.EasStatus.values();
+    private static final Event.Direction[] DIRECTIONS = Event.Direction.values();
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+
+    private final Map<Place, Integer> placeIds = new ConcurrentHashMap<>();
+    /** Places by id, replaced when a place is added. */
+    private volatile Place[] places = new Place[0];
+
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder outdated = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of EPCs kept
+     * @param ttlMillis time after which EPCs that were not seen again are removed, or {@link Long#MAX_VALUE}
+     */
+    public EpcLocationStore(final int maxEntries, final long ttlMillis) {
+        this(maxEntries, ttlMillis, DEFAULT_SEGMENTS, System::currentTimeMillis);
+    }
+
+    /**
+     * @param maxEntries maximum number of EPCs kept
+     * @param ttlMillis time after which EPCs that were not seen again are removed, or {@link Long#MAX_VALUE}
+     * @param segments number of independently locked segments, a power of two
+     * @param clock source of the current time in epoch millis
+     */
+    public EpcLocationStore(final int maxEntries, final long ttlMillis, final int segments,
+            final LongSupplier clock) {
+        if (maxEntries <= 0 || segments <= 0 || Integer.bitCount(segments) != 1) {
+            throw new IllegalArgumentException("Invalid size of " + maxEntries + " entries in " + segments
+                    + " segments");
+        }
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.segments = new Segment[segments];
+        segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segments);
+        final int maxSize = (maxEntries + segments - 1) / segments;
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new Segment(maxSize);
+        }
+    }
+
+    @Override
+    public void accept(final String device, final Event event) {
+        final List<Epc> epcs;
+        final boolean move;
+        if (event instanceof RfidObservationEvent) {
+            epcs = ((RfidObservationEvent) event).getEpcs();
+            move = false;
+        } else if (event instanceof RfidMoveEvent) {
+            epcs = ((RfidMoveEvent) event).getEpcs();
+            move = true;
+        } else {
+            return;
+        }
+        if (epcs == null) {
+            return;
+        }
+        final long now = clock.getAsLong();
+        final long eventTime = time(event.getTime(), now);
+        final int direction = move ? ordinal(event.getDirection()) : NO_VALUE;
+
+        // the EPCs of an event mostly share their place
+        String lastGroup = null;
+        List<Integer> lastUnits = null;
+        boolean placeKnown = false;
+        int lastPlace = NO_VALUE;
+        for (final Epc epc : epcs) {
+            final String value = epc.getEpc();
+            if (!EpcCodec.isPackable(value)) {
+                continue;
+            }
+            final String group = epc.getGroup() != null ? epc.getGroup() : event.getGroup();
+            final List<Integer> units = epc.getUnits() != null ? epc.getUnits() : event.getUnits();
+            final Integer aisle = epc.getAisle() != null ? epc.getAisle() : event.getAisle();
+            if (!placeKnown || !Objects.equals(group, lastGroup) || !Objects.equals(units, lastUnits)) {
+                lastPlace = placeId(device, group, units);
+                placeKnown = true;
+                lastGroup = group;
+                lastUnits = units;
+            }
+
+            final long high = EpcCodec.high(value);
+            final long low = EpcCodec.low(value);
+            final int length = value.length();
+            final int hash = EpcCodec.hash(high, low, length);
+            final Segment segment = segmentOf(hash);
+            final long stamp = segment.lock.writeLock();
+            try {
+                segment.put(high, low, length, hash, epc.getTime() != null ? time(epc.getTime(), eventTime)
+                        : eventTime, lastPlace, aisle, ordinal(epc.getEasStatus()), move, direction, now);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private long time(final String time, final long fallback) {
+        if (time == null) {
+            return fallback;
+        }
+        try {
+            return timestamps.toEpochMillis(time);
+        } catch (final DateTimeParseException e) {
+            return fallback;
+        }
+    }
+
+    private static int ordinal(final Enum<?> value) {
+        return value != null ? value.ordinal() : NO_VALUE;
+    }
+
+    private int placeId(final String device, final String group, final List<Integer> units) {
+        final Place place = new Place(device, group, units);
+        final Integer id = placeIds.get(place);
+        if (id != null) {
+            return id;
+        }
+        synchronized (placeIds) {
+            final Integer existing = placeIds.get(place);
+            if (existing != null) {
+                return existing;
+            }
+            final Place[] current = places;
+            if (current.length >= MAX_PLACES) {
+                return NO_VALUE;
+            }
+            final Place[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = place.copy();
+            places = extended;
+            placeIds.put(extended[current.length], current.length);
+            return current.length;
+        }
+    }
+
+    private Segment segmentOf(final int hash) {
+        return segments[segmentShift == Integer.SIZE ? 0 : hash >>> segmentShift];
+    }
+
+    /**
+     * @param epc hex EPC
+     * @return where the EPC was last seen, or null if it is not known or was last seen longer than the time to live ago
+     */
+    public EpcLocation get(final String epc) {
+        if (!EpcCodec.isPackable(epc)) {
+            return null;
+        }
+        final long high = EpcCodec.high(epc);
+        final long low = EpcCodec.low(epc);
+        final int length = epc.length();
+        final int hash = EpcCodec.hash(high, low, length);
+        final Segment segment = segmentOf(hash);
+        final long now = clock.getAsLong();
+
+        final long optimistic = segment.lock.tryOptimisticRead();
+        if (optimistic != 0) {
+            final EpcLocation location = read(segment, segment.find(high, low, length, hash), now, epc);
+            if (segment.lock.validate(optimistic)) {
+                return location;
+            }
+        }
+        final long stamp = segment.lock.readLock();
+        try {
+            return read(segment, segment.find(high, low, length, hash), now, epc);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds the EPCs starting with some hex digits, e.g. the header and company prefix of SGTINs. Examines every EPC,
+     * locking one segment at a time.
+     *
+     * @param prefix 1 to {@link EpcCodec#MAX_DIGITS} hex digits
+     * @param limit maximum number of EPCs to return
+     * @return where the EPCs were last seen, in no particular order
+     */
+    public List<EpcLocation> findByPrefix(final String prefix, final int limit) {
+        final List<EpcLocation> found = new ArrayList<>();
+        if (!EpcCodec.isPackable(prefix)) {
+            return found;
+        }
+        final long high = EpcCodec.high(prefix);
+        final long low = EpcCodec.low(prefix);
+        final int length = prefix.length();
+        final long now = clock.getAsLong();
+        for (final Segment segment : segments) {
+            final long stamp = segment.lock.readLock();
+            try {
+                for (int slot = 0; slot < segment.capacity && found.size() < limit; slot++) {
+                    if (segment.startsWith(slot, high, low, length)) {
+                        final EpcLocation location = read(segment, slot, now, null);
+                        if (location != null) {
+                            found.add(location);
+                        }
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * May be called without lock; the result is then discarded unless the read is validated.
+     *
+     * @param epc the EPC as looked up, or null to format the EPC of the slot
+     */
+    private EpcLocation read(final Segment segment, final int slot, final long now, final String epc) {
+        if (slot < 0) {
+            return null;
+        }
+        final long[] table = segment.table;
+        final int base = slot * SLOT_LONGS;
+        final long time = table[base + TIME];
+        final long meta = table[base + META];
+        if (now - time >= ttlMillis || digits(meta) == 0) {
+            return null;
+        }
+        final int placeId = field(meta, PLACE_SHIFT, PLACE_BITS) - 1;
+        final Place[] known = places;
+        final Place place = placeId >= 0 && placeId < known.length ? known[placeId] : null;
+        final int status = field(meta, STATUS_SHIFT, ENUM_BITS) - 1;
+        final int direction = field(meta, DIRECTION_SHIFT, ENUM_BITS) - 1;
+        final String value = epc != null ? epc.toUpperCase(Locale.ROOT)
+                : EpcCodec.toHex(table[base + HIGH], table[base + LOW], digits(meta));
+        return new EpcLocation(value, time,
+                place != null ? place.device : null, place != null ? place.group : null,
+                place != null ? place.units : null, (meta & AISLE_PRESENT) != 0 ? (int) (meta >>> Integer.SIZE) : null,
+                status >= 0 && status < EAS_STATUSES.length ? EAS_STATUSES[status] : null,
+                direction >= 0 && direction < DIRECTIONS.length ? DIRECTIONS[direction] : null);
+    }
+
+    /**
+     * Packs the digit count, EAS status, direction, place and aisle of an EPC in a long.
+     *
+     * @param status ordinal of the EAS status, or -1
+     * @param direction ordinal of the direction, or -1
+     * @param place id of the place, or -1
+     * @param aisle aisle, or null
+     */
+    private static long meta(final int digits, final int status, final int direction, final int place,
+            final Integer aisle) {
+        long meta = digits | (long) (status + 1) << STATUS_SHIFT | (long) (direction + 1) << DIRECTION_SHIFT
+                | (long) (place + 1) << PLACE_SHIFT;
+        if (aisle != null) {
+            meta |= AISLE_PRESENT | (long) aisle << Integer.SIZE;
+        }
+        return meta;
+    }
+
+    private static int digits(final long meta) {
+        return field(meta, 0, DIGITS_BITS);
+    }
+
+    private static int field(final long meta, final int shift, final int bits) {
+        return (int) (meta >>> shift) & ((1 << bits) - 1);
+    }
+
+    /**
+     * @return number of EPCs kept, including those not yet removed after their time to live
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            final long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return bytes allocated for the tables, which does not change
+     */
+    public long getTableBytes() {
+        long bytes = 0;
+        for (final Segment segment : segments) {
+            bytes += (long) segment.table.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return number of sightings stored
+     */
+    public long getUpdateCount() {
+        return updated.sum();
+    }
+
+    /**
+     * @return number of sightings ignored because the EPC was already seen later, e.g. in replayed events
+     */
+    public long getOutdatedCount() {
+        return outdated.sum();
+    }
+
+    /**
+     * @return number of EPCs removed to make room for others
+     */
+    public long getEvictionCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return number of EPCs removed after their time to live
+     */
+    public long getExpiryCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Nothing to release; the locations are kept.
+     */
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    /**
+     * Part of the table, guarded by its lock. The packed EPC, time and packed other fields of a slot are next to each
+     * other, so that a lookup mostly reads a single cache line. A slot is empty when its digit count is 0.
+     */
+    private final class Segment {
+
+        private final StampedLock lock = new StampedLock();
+        private final int maxSize;
+        private final int capacity;
+        private final long[] table;
+
+        private int size;
+        private int sweepCursor;
+        private int sampleCursor;
+
+        Segment(final int maxSize) {
+            this.maxSize = maxSize;
+            // at most three quarters full, and not rounded up to a power of two so that the size is as budgeted
+            capacity = maxSize + maxSize / 3 + 1;
+            table = new long[capacity * SLOT_LONGS];
+        }
+
+        private boolean isEmpty(final int slot) {
+            return digits(table[slot * SLOT_LONGS + META]) == 0;
+        }
+
+        /**
+         * @return slot of the EPC, or -1. Gives up after visiting every slot, in case of an unlocked read.
+         */
+        int find(final long high, final long low, final int length, final int hash) {
+            int slot = home(hash);
+            for (int i = 0; i < capacity; i++) {
+                final int base = slot * SLOT_LONGS;
+                final int digits = digits(table[base + META]);
+                if (digits == 0) {
+                    break;
+                }
+                if (table[base + HIGH] == high && table[base + LOW] == low && digits == length) {
+                    return slot;
+                }
+                slot = next(slot);
+            }
+            return -1;
+        }
+
+        private int home(final int hash) {
+            return (hash & Integer.MAX_VALUE) % capacity;
+        }
+
+        private int next(final int slot) {
+            return slot + 1 < capacity ? slot + 1 : 0;
+        }
+
+        /**
+         * @return number of slots from the first slot to the second, going forward
+         */
+        private int distance(final int from, final int to) {
+            final int distance = to - from;
+            return distance >= 0 ? distance : distance + capacity;
+        }
+
+        boolean startsWith(final int slot, final long high, final long low, final int length) {
+            final int base = slot * SLOT_LONGS;
+            final int slotDigits = digits(table[base + META]);
+            if (slotDigits < length) {
+                return false;
+            }
+            // drop the trailing digits, so as many digits as the prefix remain
+            final int shift = (slotDigits - length) * 4;
+            final long slotHigh = table[base + HIGH];
+            final long slotLow = table[base + LOW];
+            final long shiftedHigh;
+            final long shiftedLow;
+            if (shift == 0) {
+                shiftedHigh = slotHigh;
+                shiftedLow = slotLow;
+            } else if (shift < 64) {
+                shiftedHigh = slotHigh >>> shift;
+                shiftedLow = (slotLow >>> shift) | (slotHigh << (64 - shift));
+            } else {
+                shiftedHigh = 0;
+                shiftedLow = slotHigh >>> (shift - 64);
+            }
+            return shiftedHigh == high && shiftedLow == low;
+        }
+
+        void put(final long high, final long low, final int length, final int hash, final long time, final int place,
+                final Integer aisle, final int status, final boolean move, final int direction, final long now) {
+            sweep(now);
+            int slot = find(high, low, length, hash);
+            int slotDirection = direction;
+            if (slot >= 0) {
+                final int base = slot * SLOT_LONGS;
+                final boolean stale = now - table[base + TIME] >= ttlMillis;
+                if (!stale && time < table[base + TIME]) {
+                    outdated.increment();
+                    return;
+                }
+                if (!move && !stale) {
+                    slotDirection = field(table[base + META], DIRECTION_SHIFT, ENUM_BITS) - 1;
+                }
+            } else {
+                if (size >= maxSize) {
+                    evict();
+                }
+                slot = home(hash);
+                while (!isEmpty(slot)) {
+                    slot = next(slot);
+                }
+                size++;
+            }
+            final int base = slot * SLOT_LONGS;
+            table[base + HIGH] = high;
+            table[base + LOW] = low;
+            table[base + TIME] = time;
+            table[base + META] = meta(length, status, slotDirection, place, aisle);
+            updated.increment();
+        }
+
+        /**
+         * Examines a few slots from where the previous sweep stopped and removes expired entries.
+         */
+        private void sweep(final long now) {
+            for (int i = 0; i < SWEEP_STEPS && size > 0; i++) {
+                final int slot = sweepCursor;
+                if (!isEmpty(slot) && now - table[slot * SLOT_LONGS + TIME] >= ttlMillis) {
+                    removeAt(slot);
+                    expired.increment();
+                    // an entry may have been shifted into this slot, look at it again next time
+                } else {
+                    sweepCursor = next(slot);
+                }
+            }
+        }
+
+        /**
+         * Removes the least recently seen of a few entries, taken in turn from around the table.
+         */
+        private void evict() {
+            int victim = -1;
+            int sampled = 0;
+            for (int i = 0; i < capacity && sampled < SAMPLE_SIZE; i++) {
+                final int slot = sampleCursor;
+                sampleCursor = next(slot);
+                if (!isEmpty(slot)) {
+                    if (victim < 0 || table[slot * SLOT_LONGS + TIME] < table[victim * SLOT_LONGS + TIME]) {
+                        victim = slot;
+                    }
+                    sampled++;
+                }
+            }
+            if (victim >= 0) {
+                removeAt(victim);
+                evicted.increment();
+            }
+        }
+
+        /**
+         * Backward-shift deletion, which keeps probe sequences intact without tombstones.
+         */
+        private void removeAt(final int slot) {
+            int hole = slot;
+            int i = slot;
+            while (true) {
+                i = next(i);
+                if (isEmpty(i)) {
+                    break;
+                }
+                final int base = i * SLOT_LONGS;
+                final int digits = digits(table[base + META]);
+                final int ideal = home(EpcCodec.hash(table[base + HIGH], table[base + LOW], digits));
+                if (distance(ideal, i) >= distance(hole, i)) {
+                    System.arraycopy(table, base, table, hole * SLOT_LONGS, SLOT_LONGS);
+                    hole = i;
+                }
+            }
+            table[hole * SLOT_LONGS + META] = 0;
+            size--;
+        }
+    }
+
+    /**
+     * Device, group and units at which EPCs are seen.
+     */
+    private static final class Place {
+
+        private final String device;
+        private final String group;
+        private final List<Integer> units;
+
+        Place(final String device, final String group, final List<Integer> units) {
+            this.device = device;
+            this.group = group;
+            this.units = units;
+        }
+
+        /**
+         * @return a place which does not share the units of the event
+         */
+        Place copy() {
+            final List<Integer> ownUnits = units != null ? Collections.unmodifiableList(new ArrayList<>(units)) : null;
+            return new Place(device, group, ownUnits);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Place)) {
+                return false;
+            }
+            final Place other = (Place) o;
+            return Objects.equals(device, other.device) && Objects.equals(group, other.group)
+                    && Objects.equals(units, other.units);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Objects.hashCode(device);
+            hash = 31 * hash + Objects.hashCode(group);
+            return 31 * hash + Objects.hashCode(units);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nedap.retail.example.rollout;
+
+/**
+ * Outcome of a rollout on one device.
+ */
+public final class DeviceResult {
+
+    public enum Status {
+        /** Applied, and read back where possible. */
+        SUCCEEDED,
+        /** Applied, but the read-back differed on every attempt. */
+        NOT_VERIFIED,
+        /** The device refused the token, so it was not retried. */
+        UNAUTHORIZED,
+        /** Every attempt failed. */
+        FAILED,
+        /** The time for the device ran out before an attempt succeeded. */
+        TIMED_OUT
+    }
+
+    private final String device;
+    private final Status status;
+    private final int attempts;
+    private final long durationMillis;
+    private final String error;
+
+    DeviceResult(final String device, final Status status, final int attempts, final long durationMillis,
+            final String error) {
+        this.device = device;
+        this.status = status;
+        this.attempts = attempts;
+        this.durationMillis = durationMillis;
+        this.error = error;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return error of the last failed attempt, or null
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,27 @@
+package com.nedap.retail.example.rollout;
+
+/**
+ * A device to roll out to.
+ */
+public final class DeviceTarget {
+
+    private final String url;
+    private final String token;
+
+    /**
+     * @param url base URL of the device, e.g. http://10.0.0.12
+     * @param token authentication token, or null if authentication is disabled on the device
+     */
+    public DeviceTarget(final String url, final String token) {
+        this.url = url;
+        this.token = token;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
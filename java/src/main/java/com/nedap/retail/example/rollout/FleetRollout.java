@@ -0,0 +1,187 @@
+package com.nedap.retail.example.rollout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.rest.ApiCaller;
+import com.nedap.retail.example.rest.HttpRequestException;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.example.rest.NotFoundException;
+import com.nedap.retail.example.rest.UnauthorizedException;
+import com.nedap.retail.example.websocket.client.ReconnectBackoff;
+
+/**
+ * Applies a command to many devices in parallel. At most a given number of devices is worked on at a time, each on a
+ * thread of its own with a blocking {@link ApiCaller}. A device gets a fixed time, within which the command is
+ * applied and read back, and retried with backoff when either fails. Every request is bounded by a share of the time
+ * the device has left, split between connecting and reading, so one unreachable device does not hold up the others for
+ * longer than its own time.
+ */
+public class FleetRollout {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FleetRollout.class);
+
+    private final int concurrency;
+    private final long deviceTimeoutMillis;
+    private final int maxAttempts;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param concurrency maximum number of devices worked on at a time
+     * @param deviceTimeoutMillis time a device gets for all its attempts, including backoff
+     * @param maxAttempts maximum number of attempts per device
+     * @param minBackoffMillis delay before the first retry, before jitter
+     * @param maxBackoffMillis maximum delay between retries, before jitter
+     */
+    public FleetRollout(final int concurrency, final long deviceTimeoutMillis, final int maxAttempts,
+            final long minBackoffMillis, final long maxBackoffMillis) {
+        if (concurrency < 1 || maxAttempts < 1 || deviceTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Concurrency, attempts and timeout should be positive.");
+        }
+        this.concurrency = concurrency;
+        this.deviceTimeoutMillis = deviceTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Applies the command to every device and waits until all are done.
+     *
+     * @param devices devices to apply the command to
+     * @param command command to apply
+     * @return result of every device, in the order given
+     * @throws InterruptedException if interrupted while waiting; devices still being worked on are interrupted too
+     */
+    public RolloutReport run(final List<DeviceTarget> devices, final RolloutCommand command)
+            throws InterruptedException {
+        final long startedAt = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency,
+                devices.size())), runnable -> {
+                    final Thread thread = new Thread(runnable, "rollout-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        LOG.info("Rolling out {} to {} devices, {} at a time", command.getName(), devices.size(), concurrency);
+        try {
+            final List<Future<DeviceResult>> futures = new ArrayList<>(devices.size());
+            for (final DeviceTarget device : devices) {
+                futures.add(executor.submit(() -> {
+                    final DeviceResult result = rollOut(device, command);
+                    LOG.info("{}/{} {}: {} after {} attempt(s)", done.incrementAndGet(), devices.size(),
+                            device.getUrl(), result.getStatus(), result.getAttempts());
+                    return result;
+                }));
+            }
+
+            final List<DeviceResult> results = new ArrayList<>(devices.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (final ExecutionException e) {
+                    results.add(new DeviceResult(devices.get(i).getUrl(), DeviceResult.Status.FAILED, 0, 0,
+                            String.valueOf(e.getCause())));
+                }
+            }
+
+            final RolloutReport report = new RolloutReport(command.getName(), startedAt,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), results);
+            LOG.info("Rollout of {} done in {} ms: {}", command.getName(), report.getDurationMillis(),
+                    report.getSummary());
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private DeviceResult rollOut(final DeviceTarget device, final RolloutCommand command)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(deviceTimeoutMillis);
+        final ApiCaller api = new ApiCaller(device.getUrl());
+        if (device.getToken() != null) {
+            api.setToken(device.getToken());
+        }
+        final ReconnectBackoff backoff = new ReconnectBackoff(minBackoffMillis, maxBackoffMillis);
+
+        DeviceResult.Status status = DeviceResult.Status.FAILED;
+        String error = null;
+        int attempts = 0;
+        while (attempts < maxAttempts) {
+            if (attempts > 0) {
+                final long delay = backoff.nextDelayMillis();
+                if (remainingMillis(deadline) <= delay) {
+                    status = DeviceResult.Status.TIMED_OUT;
+                    break;
+                }
+                Thread.sleep(delay);
+            }
+            attempts++;
+            try {
+                // leave half of the time for reading back
+                setTimeouts(api, deadline, 2);
+                command.apply(api);
+                setTimeouts(api, deadline, 1);
+                if (command.verify(api)) {
+                    status = DeviceResult.Status.SUCCEEDED;
+                    error = null;
+                    break;
+                }
+                status = DeviceResult.Status.NOT_VERIFIED;
+                error = "The device did not report the new state.";
+            } catch (final UnauthorizedException e) {
+                status = DeviceResult.Status.UNAUTHORIZED;
+                error = e.getMessage();
+                break;
+            } catch (final NotFoundException e) {
+                // not a compatible device, retrying does not help
+                status = DeviceResult.Status.FAILED;
+                error = e.getMessage();
+                break;
+            } catch (final HttpRequestException | MessageParsingException e) {
+                status = remainingMillis(deadline) <= 0 ? DeviceResult.Status.TIMED_OUT : DeviceResult.Status.FAILED;
+                error = e.getCause() != null ? String.valueOf(e.getCause()) : e.getMessage();
+                LOG.debug("Attempt {} on {} failed: {}", attempts, device.getUrl(), error);
+            }
+        }
+        return new DeviceResult(device.getUrl(), status, attempts,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), error);
+    }
+
+    /**
+     * Bounds the next request by an equal share of the time the device has left, so that it and the requests after it
+     * together take no longer. Half of the share is for connecting and half for reading the response, each at least a
+     * millisecond since a timeout of 0 means none.
+     *
+     * @param requests number of requests still to be made in the time left, including the next one
+     */
+    private static void setTimeouts(final ApiCaller api, final long deadline, final int requests)
+            throws HttpRequestException {
+        final long remaining = remainingMillis(deadline);
+        if (remaining <= 0) {
+            throw new HttpRequestException("Time for the device ran out.");
+        }
+        final long share = remaining / requests;
+        final int connectTimeout = (int) Math.max(1, Math.min(Integer.MAX_VALUE, share / 2));
+        final int readTimeout = (int) Math.max(1, Math.min(Integer.MAX_VALUE, share - share / 2));
+        api.setTimeouts(connectTimeout, readTimeout);
+    }
+
+    private static long remainingMillis(final long deadline) {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,172 @@
+package com.nedap.retail.example.rollout;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonParseException;
+import com.nedap.retail.renos.api.v2.rest.message.BlinkRequest;
+import com.nedap.retail.renos.api.v2.rest.message.Settings;
+import com.nedap.retail.renos.json.JsonMapper;
+
+/**
+ * Command line mode which rolls settings or a blink request out to the devices listed in a file, and writes a report
+ * of the outcome as JSON. Exits with 0 if every device succeeded, 1 if any did not, and 2 on invalid options.
+ * <p>
+ * Logging goes to standard error, so that standard output holds nothing but the report when no report file is given.
+ */
+public final class RolloutCli {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RolloutCli.class);
+
+    private Path devicesFile;
+    private Path settingsFile;
+    private Path blinkFile;
+    private Path reportFile;
+    private int concurrency = 16;
+    private long timeoutMillis = 30000;
+    private int attempts = 3;
+
+    private RolloutCli() {
+    }
+
+    public static void main(final String[] args) {
+        // the console appender follows System.out, so this moves logging to standard error
+        final PrintStream reportOut = System.out;
+        System.setOut(System.err);
+
+        final RolloutCli cli;
+        final List<DeviceTarget> devices;
+        final RolloutCommand command;
+        try {
+            cli = parse(args);
+            devices = readDevices(cli.devicesFile);
+            command = cli.settingsFile != null
+                    ? RolloutCommand.updateSettings(readJson(cli.settingsFile, Settings.class))
+                    : RolloutCommand.blink(readJson(cli.blinkFile, BlinkRequest.class));
+        } catch (final IllegalArgumentException | IOException e) {
+            LOG.info("{}\n{}", e.getMessage(), usage());
+            System.exit(2);
+            return;
+        }
+
+        try {
+            final RolloutReport report = new FleetRollout(cli.concurrency, cli.timeoutMillis, cli.attempts, 500,
+                    5000).run(devices, command);
+            if (cli.reportFile != null) {
+                Files.write(cli.reportFile, report.toJson().getBytes(StandardCharsets.UTF_8));
+                LOG.info("Report written to {}", cli.reportFile);
+            } else {
+                reportOut.println(report.toJson());
+                reportOut.flush();
+            }
+            System.exit(report.isSuccessful() ? 0 : 1);
+        } catch (final IOException e) {
+            LOG.error("Could not write report", e);
+            System.exit(1);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    private static RolloutCli parse(final String[] args) {
+        final RolloutCli cli = new RolloutCli();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of option " + args[i]);
+            }
+            final String value = args[i + 1];
+            switch (args[i]) {
+                case "--devices":
+                    cli.devicesFile = Paths.get(value);
+                    break;
+                case "--settings":
+                    cli.settingsFile = Paths.get(value);
+                    break;
+                case "--blink":
+                    cli.blinkFile = Paths.get(value);
+                    break;
+                case "--report":
+                    cli.reportFile = Paths.get(value);
+                    break;
+                case "--concurrency":
+                    cli.concurrency = Integer.parseInt(value);
+                    break;
+                case "--timeout":
+                    cli.timeoutMillis = Long.parseLong(value) * 1000;
+                    break;
+                case "--attempts":
+                    cli.attempts = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (cli.devicesFile == null) {
+            throw new IllegalArgumentException("Missing option --devices");
+        }
+        if ((cli.settingsFile == null) == (cli.blinkFile == null)) {
+            throw new IllegalArgumentException("Give either --settings or --blink");
+        }
+        if (cli.concurrency < 1 || cli.attempts < 1 || cli.timeoutMillis < 1) {
+            throw new IllegalArgumentException("--concurrency, --attempts and --timeout should be positive");
+        }
+        return cli;
+    }
+
+    /**
+     * Reads devices from lines of the form {@code <url> [token]}. Blank lines and lines starting with # are skipped.
+     */
+    private static List<DeviceTarget> readDevices(final Path file) throws IOException {
+        final List<DeviceTarget> devices = new ArrayList<>();
+        for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            final String[] parts = trimmed.split("\\s+");
+            String url = parts[0];
+            while (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+            }
+            devices.add(new DeviceTarget(url, parts.length > 1 ? parts[1] : null));
+        }
+        if (devices.isEmpty()) {
+            throw new IllegalArgumentException("No devices in " + file);
+        }
+        return devices;
+    }
+
+    private static <T> T readJson(final Path file, final Class<T> clazz) throws IOException {
+        final T value;
+        try {
+            value = JsonMapper.fromJson(clazz, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } catch (final JsonParseException e) {
+            throw new IllegalArgumentException("Invalid " + clazz.getSimpleName() + " in " + file);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid " + clazz.getSimpleName() + " in " + file);
+        }
+        return value;
+    }
+
+    static String usage() {
+        return "Usage: rollout --devices <file> (--settings <file> | --blink <file>) [options]\n"
+                + "  --devices <file>       devices, one per line as <url> [token]\n"
+                + "  --settings <file>      settings to apply, as JSON of the settings endpoint\n"
+                + "  --blink <file>         blink request to send, as JSON of the blink endpoint\n"
+                + "  --concurrency <count>  devices worked on at a time, default 16\n"
+                + "  --timeout <s>          time per device, including retries, default 30\n"
+                + "  --attempts <count>     attempts per device, default 3\n"
+                + "  --report <file>        file to write the JSON report to, default standard output";
+    }
+}
@@ -0,0 +1,81 @@
+package com.nedap.retail.example.rollout;
+
+import java.util.Objects;
+
+import com.nedap.retail.example.rest.ApiCaller;
+import com.nedap.retail.example.rest.HttpRequestException;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.rest.message.BlinkRequest;
+import com.nedap.retail.renos.api.v2.rest.message.Settings;
+
+/**
+ * What to apply to every device of a rollout.
+ */
+public interface RolloutCommand {
+
+    /**
+     * @return short name of the command, for the report
+     */
+    String getName();
+
+    void apply(ApiCaller api) throws HttpRequestException, MessageParsingException;
+
+    /**
+     * Reads back whether the command took effect.
+     *
+     * @return true if it did, or if it cannot be read back
+     */
+    boolean verify(ApiCaller api) throws HttpRequestException, MessageParsingException;
+
+    /**
+     * Updates the settings, and verifies the fields that are set by reading the settings back.
+     */
+    static RolloutCommand updateSettings(final Settings settings) {
+        return new RolloutCommand() {
+            @Override
+            public String getName() {
+                return "settings";
+            }
+
+            @Override
+            public void apply(final ApiCaller api) throws HttpRequestException {
+                api.updateSettings(settings);
+            }
+
+            @Override
+            public boolean verify(final ApiCaller api) throws HttpRequestException, MessageParsingException {
+                final Settings actual = api.retrieveSystemSettings();
+                return matches(settings.getEnableRf(), actual.getEnableRf())
+                        && matches(settings.getEnableRfid(), actual.getEnableRfid())
+                        && matches(settings.getLightSoundRf(), actual.getLightSoundRf())
+                        && matches(settings.getLightSoundRfid(), actual.getLightSoundRfid());
+            }
+
+            private boolean matches(final Object expected, final Object actual) {
+                return expected == null || Objects.equals(expected, actual);
+            }
+        };
+    }
+
+    /**
+     * Sends a blink request, which cannot be read back.
+     */
+    static RolloutCommand blink(final BlinkRequest request) {
+        return new RolloutCommand() {
+            @Override
+            public String getName() {
+                return "blink";
+            }
+
+            @Override
+            public void apply(final ApiCaller api) throws HttpRequestException {
+                api.sendBlink(request);
+            }
+
+            @Override
+            public boolean verify(final ApiCaller api) {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.nedap.retail.example.rollout;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.nedap.retail.example.event.EventTimes;
+
+/**
+ * Results of a rollout, in the order of the devices given.
+ */
+public final class RolloutReport {
+
+    private final String command;
+    private final long startedAt;
+    private final long durationMillis;
+    private final List<DeviceResult> results;
+
+    RolloutReport(final String command, final long startedAt, final long durationMillis,
+            final List<DeviceResult> results) {
+        this.command = command;
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    public List<DeviceResult> getResults() {
+        return results;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return number of devices per status, including statuses no device ended in
+     */
+    public Map<DeviceResult.Status, Integer> getSummary() {
+        final Map<DeviceResult.Status, Integer> summary = new EnumMap<>(DeviceResult.Status.class);
+        for (final DeviceResult.Status status : DeviceResult.Status.values()) {
+            summary.put(status, 0);
+        }
+        for (final DeviceResult result : results) {
+            summary.merge(result.getStatus(), 1, Integer::sum);
+        }
+        return summary;
+    }
+
+    /**
+     * @return true if the rollout succeeded on every device
+     */
+    public boolean isSuccessful() {
+        return getSummary().get(DeviceResult.Status.SUCCEEDED) == results.size();
+    }
+
+    /**
+     * @return the report as JSON, with a summary and the result of every device
+     */
+    public String toJson() {
+        final JsonObject json = new JsonObject();
+        json.addProperty("command", command);
+        json.addProperty("started", EventTimes.format(startedAt));
+        json.addProperty("duration_ms", durationMillis);
+
+        final JsonObject summary = new JsonObject();
+        for (final Map.Entry<DeviceResult.Status, Integer> entry : getSummary().entrySet()) {
+            summary.addProperty(entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+        json.add("summary", summary);
+
+        final JsonArray devices = new JsonArray();
+        for (final DeviceResult result : results) {
+            final JsonObject device = new JsonObject();
+            device.addProperty("device", result.getDevice());
+            device.addProperty("status", result.getStatus().name().toLowerCase());
+            device.addProperty("attempts", result.getAttempts());
+            device.addProperty("duration_ms", result.getDurationMillis());
+            device.addProperty("error", result.getError());
+            devices.add(device);
+        }
+        json.add("devices", devices);
+        return json.toString();
+    }
+}
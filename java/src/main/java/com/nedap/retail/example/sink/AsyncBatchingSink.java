@@ -0,0 +1,180 @@
+package com.nedap.retail.example.sink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Base of sinks which write on a thread of their own. Accepted events are queued; the writer thread takes them off in
+ * batches and flushes the output after a number of events or an interval, whichever comes first. When the queue is
+ * full, events are dropped rather than blocking the receiving thread.
+ */
+public abstract class AsyncBatchingSink implements EventSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncBatchingSink.class);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    private final BlockingQueue<Record> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * @param name name of the writer thread
+     * @param capacity number of events that can be queued
+     * @param batchSize maximum number of events written between flushes
+     * @param flushIntervalMillis maximum time events stay unflushed
+     */
+    protected AsyncBatchingSink(final String name, final int capacity, final int batchSize,
+            final long flushIntervalMillis) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        writer = new Thread(this::run, name);
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread. Called by subclasses once their output is ready.
+     */
+    protected void start() {
+        writer.start();
+    }
+
+    @Override
+    public void accept(final String device, final Event event) {
+        if (running && queue.offer(new Record(device, event))) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes an event to the buffered output. Called on the writer thread only.
+     */
+    protected abstract void write(String device, Event event) throws IOException;
+
+    /**
+     * Flushes the buffered output. Called on the writer thread only.
+     */
+    protected abstract void flushOutput() throws IOException;
+
+    /**
+     * Closes the output after the last event was written. Called on the writer thread only.
+     */
+    protected abstract void closeOutput() throws IOException;
+
+    /**
+     * Called on the writer thread when writing or flushing failed; the events of the failed batch are dropped.
+     */
+    protected void onFailure(final IOException e) {
+        LOG.error("Could not write events to {}", writer.getName(), e);
+    }
+
+    private void run() {
+        final List<Record> batch = new ArrayList<>(batchSize);
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        int unflushed = 0;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                final Record first = queue.poll(Math.max(0, nextFlush - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    for (final Record record : batch) {
+                        write(record.device, record.event);
+                    }
+                    written.addAndGet(batch.size());
+                    unflushed += batch.size();
+                    batch.clear();
+                }
+                final boolean intervalPassed = System.nanoTime() - nextFlush >= 0;
+                if (unflushed > 0 && (unflushed >= batchSize || intervalPassed)) {
+                    flushOutput();
+                    unflushed = 0;
+                }
+                if (intervalPassed) {
+                    nextFlush = System.nanoTime() + flushIntervalNanos;
+                }
+            } catch (final InterruptedException e) {
+                running = false;
+            } catch (final IOException e) {
+                dropped.addAndGet(batch.size());
+                batch.clear();
+                onFailure(e);
+            } catch (final RuntimeException e) {
+                dropped.addAndGet(batch.size());
+                batch.clear();
+                LOG.error("There was an error while writing events to {}", writer.getName(), e);
+            }
+        }
+
+        try {
+            flushOutput();
+            closeOutput();
+        } catch (final IOException e) {
+            onFailure(e);
+        }
+    }
+
+    /**
+     * Stops accepting events, writes the events still queued and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    /**
+     * @return number of events dropped because the queue was full or writing failed
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    private static final class Record {
+
+        private final String device;
+        private final Event event;
+
+        Record(final String device, final Event event) {
+            this.device = device;
+            this.event = event;
+        }
+    }
+}
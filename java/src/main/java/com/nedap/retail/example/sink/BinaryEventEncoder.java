@@ -0,0 +1,157 @@
+package com.nedap.retail.example.sink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.rfid.EpcCodec;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+
+/**
+ * Writes events in a compact length-prefixed binary format, big-endian:
+ *
+ * <pre>
+ * int    length of the rest of the record
+ * byte   event type, ordinal of {@link EventType}
+ * long   event time in epoch millis, {@link Long#MIN_VALUE} if absent
+ * str    id
+ * str    device
+ * str    group
+ * ints   units
+ * int    aisle, {@link Integer#MIN_VALUE} if absent
+ * byte   direction, ordinal of {@link Event.Direction}, -1 if absent
+ * int    input or jammer status as 0 or 1, SD address, or {@link Integer#MIN_VALUE}
+ * int    number of EPCs, followed by each EPC:
+ *   byte   number of hex digits if packed in the two longs that follow, else 0 and a str
+ *   long   time in epoch millis, {@link Long#MIN_VALUE} if absent
+ *   byte   EAS status, ordinal of {@link Epc.EasStatus}, -1 if absent
+ *   str    group
+ *   ints   units
+ *   int    aisle, {@link Integer#MIN_VALUE} if absent
+ * </pre>
+ *
+ * where str is an int length, -1 for null, followed by UTF-8 bytes, and ints is an int count, -1 for null, followed by
+ * the ints. Lengths and counts are ints, as frames of up to 64 MB can hold more EPCs or longer strings than fit in a
+ * short. The EPC of an RFID alarm is written as the only EPC, with only its value set.
+ */
+public class BinaryEventEncoder implements EventEncoder {
+
+    private static final byte ABSENT = -1;
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+    private final DataOutputStream data = new DataOutputStream(buffer);
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+
+    @Override
+    public void encode(final String device, final Event event, final OutputStream out) throws IOException {
+        buffer.reset();
+        data.writeByte(ordinal(event.getType()));
+        data.writeLong(time(event.getTime()));
+        writeString(event.getId());
+        writeString(device);
+        writeString(event.getGroup());
+        writeInts(event.getUnits());
+        data.writeInt(event.getAisle() != null ? event.getAisle() : NO_VALUE);
+        data.writeByte(ordinal(event.getDirection()));
+        data.writeInt(value(event));
+
+        final List<Epc> epcs = epcs(event);
+        data.writeInt(epcs.size());
+        for (final Epc epc : epcs) {
+            writeEpc(epc.getEpc());
+            data.writeLong(time(epc.getTime()));
+            data.writeByte(ordinal(epc.getEasStatus()));
+            writeString(epc.getGroup());
+            writeInts(epc.getUnits());
+            data.writeInt(epc.getAisle() != null ? epc.getAisle() : NO_VALUE);
+        }
+
+        data.flush();
+        final int length = buffer.size();
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        buffer.writeTo(out);
+    }
+
+    private static List<Epc> epcs(final Event event) {
+        List<Epc> epcs = null;
+        if (event instanceof RfidObservationEvent) {
+            epcs = ((RfidObservationEvent) event).getEpcs();
+        } else if (event instanceof RfidMoveEvent) {
+            epcs = ((RfidMoveEvent) event).getEpcs();
+        } else if (event instanceof RfidAlarmEvent) {
+            epcs = Collections.singletonList(new Epc(((RfidAlarmEvent) event).getEpc(), null, null, null, null, null));
+        }
+        return epcs != null ? epcs : Collections.emptyList();
+    }
+
+    private static int value(final Event event) {
+        if (event instanceof InputObservationEvent) {
+            final Boolean status = ((InputObservationEvent) event).getStatus();
+            return status != null ? (status ? 1 : 0) : NO_VALUE;
+        } else if (event instanceof RfJammerEvent) {
+            return ((RfJammerEvent) event).isStatus() ? 1 : 0;
+        } else if (event instanceof SdLabelDetectEvent) {
+            final Integer address = ((SdLabelDetectEvent) event).getSdAddress();
+            return address != null ? address : NO_VALUE;
+        }
+        return NO_VALUE;
+    }
+
+    private long time(final String time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        try {
+            return timestamps.toEpochMillis(time);
+        } catch (final DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+
+    private static byte ordinal(final Enum<?> value) {
+        return value != null ? (byte) value.ordinal() : ABSENT;
+    }
+
+    private void writeEpc(final String epc) throws IOException {
+        if (epc != null && EpcCodec.isPackable(epc)) {
+            data.writeByte(epc.length());
+            data.writeLong(EpcCodec.high(epc));
+            data.writeLong(EpcCodec.low(epc));
+        } else {
+            data.writeByte(0);
+            writeString(epc);
+        }
+    }
+
+    private void writeString(final String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private void writeInts(final List<Integer> values) throws IOException {
+        if (values == null) {
+            data.writeInt(-1);
+            return;
+        }
+        data.writeInt(values.size());
+        for (final Integer value : values) {
+            data.writeInt(value != null ? value : NO_VALUE);
+        }
+    }
+}
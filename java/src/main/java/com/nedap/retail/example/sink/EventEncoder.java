@@ -0,0 +1,23 @@
+package com.nedap.retail.example.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Format in which a sink writes events. Encoders are used by a single writer thread and may keep state between
+ * calls, so every sink needs its own instance.
+ */
+public interface EventEncoder {
+
+    /**
+     * Writes one event as a self-delimiting record.
+     *
+     * @param device device the event was received from
+     * @param event event to write
+     * @param out stream to write to
+     * @throws IOException if writing failed
+     */
+    void encode(String device, Event event, OutputStream out) throws IOException;
+}
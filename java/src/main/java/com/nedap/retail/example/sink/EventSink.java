@@ -0,0 +1,20 @@
+package com.nedap.retail.example.sink;
+
+import java.io.Closeable;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Destination of the events received from devices. Events are handed over on the thread that receives them, so
+ * implementations must return quickly and do any formatting or I/O elsewhere, see {@link AsyncBatchingSink}.
+ */
+public interface EventSink extends Closeable {
+
+    /**
+     * Hands over an event. Must not block.
+     *
+     * @param device device the event was received from
+     * @param event the event, which must not be modified afterwards
+     */
+    void accept(String device, Event event);
+}
@@ -0,0 +1,54 @@
+package com.nedap.retail.example.sink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Appends events to a file, e.g. as JSON lines with {@link JsonLinesEncoder} or binary with
+ * {@link BinaryEventEncoder}.
+ */
+public class FileEventSink extends AsyncBatchingSink {
+
+    private static final int CAPACITY = 65536;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final EventEncoder encoder;
+    private final OutputStream out;
+
+    /**
+     * @param file file to append to, created if it does not exist
+     * @param encoder encoder of the events
+     * @param batchSize maximum number of events written between flushes
+     * @param flushIntervalMillis maximum time events stay unflushed
+     * @throws IOException if the file could not be opened
+     */
+    public FileEventSink(final Path file, final EventEncoder encoder, final int batchSize,
+            final long flushIntervalMillis) throws IOException {
+        super("sink-" + file.getFileName(), CAPACITY, batchSize, flushIntervalMillis);
+        this.encoder = encoder;
+        this.out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND), BUFFER_SIZE);
+        start();
+    }
+
+    @Override
+    protected void write(final String device, final Event event) throws IOException {
+        encoder.encode(device, event, out);
+    }
+
+    @Override
+    protected void flushOutput() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    protected void closeOutput() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.nedap.retail.example.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.json.JsonMapper;
+
+/**
+ * Writes every event as one line of UTF-8 JSON: {"device":...,"message":{...}}, where the message is the event as
+ * sent by Renos.
+ */
+public class JsonLinesEncoder implements EventEncoder {
+
+    private static final byte[] DEVICE_PREFIX = "{\"device\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MESSAGE_PREFIX = ",\"message\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "}\n".getBytes(StandardCharsets.UTF_8);
+
+    private String lastDevice;
+    private byte[] lastDeviceJson;
+
+    @Override
+    public void encode(final String device, final Event event, final OutputStream out) throws IOException {
+        out.write(DEVICE_PREFIX);
+        out.write(deviceJson(device));
+        out.write(MESSAGE_PREFIX);
+        out.write(MessageParser.toJson(event).getBytes(StandardCharsets.UTF_8));
+        out.write(SUFFIX);
+    }
+
+    /**
+     * Events mostly arrive in runs from the same device, so its quoted name is kept.
+     */
+    private byte[] deviceJson(final String device) {
+        if (lastDeviceJson == null || !Objects.equals(lastDevice, device)) {
+            lastDevice = device;
+            lastDeviceJson = JsonMapper.toJson(device).getBytes(StandardCharsets.UTF_8);
+        }
+        return lastDeviceJson;
+    }
+}
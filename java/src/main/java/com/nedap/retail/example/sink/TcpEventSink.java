@@ -0,0 +1,109 @@
+package com.nedap.retail.example.sink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Streams events to a TCP listener, e.g. a local collector. Connects on the first event and reconnects after a
+ * failure; events written while no connection can be made are dropped.
+ */
+public class TcpEventSink extends AsyncBatchingSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TcpEventSink.class);
+
+    private static final int CAPACITY = 65536;
+    private static final int BUFFER_SIZE = 65536;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long RETRY_DELAY_NANOS = 5000000000L;
+
+    private final InetSocketAddress address;
+    private final EventEncoder encoder;
+
+    private Socket socket;
+    private OutputStream out;
+    private long retryAt;
+
+    /**
+     * @param host host to stream to
+     * @param port port to stream to
+     * @param encoder encoder of the events
+     * @param batchSize maximum number of events written between flushes
+     * @param flushIntervalMillis maximum time events stay unflushed
+     */
+    public TcpEventSink(final String host, final int port, final EventEncoder encoder, final int batchSize,
+            final long flushIntervalMillis) {
+        super("sink-" + host + ":" + port, CAPACITY, batchSize, flushIntervalMillis);
+        this.address = new InetSocketAddress(host, port);
+        this.encoder = encoder;
+        retryAt = System.nanoTime();
+        start();
+    }
+
+    @Override
+    protected void write(final String device, final Event event) throws IOException {
+        encoder.encode(device, event, connection());
+    }
+
+    @Override
+    protected void flushOutput() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    protected void closeOutput() throws IOException {
+        disconnect();
+    }
+
+    @Override
+    protected void onFailure(final IOException e) {
+        if (socket != null) {
+            LOG.warn("Lost connection to {}, reason {}", address, e.getMessage());
+        }
+        disconnect();
+    }
+
+    private OutputStream connection() throws IOException {
+        if (out != null) {
+            return out;
+        }
+        if (System.nanoTime() - retryAt < 0) {
+            throw new IOException("Not connected to " + address);
+        }
+        final Socket connecting = new Socket();
+        try {
+            connecting.setTcpNoDelay(true);
+            connecting.connect(address, CONNECT_TIMEOUT_MILLIS);
+        } catch (final IOException e) {
+            connecting.close();
+            retryAt = System.nanoTime() + RETRY_DELAY_NANOS;
+            LOG.warn("Could not connect to {}, reason {}", address, e.getMessage());
+            throw e;
+        }
+        LOG.info("Connected to {}", address);
+        socket = connecting;
+        out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        return out;
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                LOG.debug("Could not close connection to {}", address, e);
+            }
+        }
+        socket = null;
+        out = null;
+    }
+}
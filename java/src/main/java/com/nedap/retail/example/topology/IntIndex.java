@@ -0,0 +1,64 @@
+package com.nedap.retail.example.topology;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size open-addressing map from int keys to non-negative int positions, which never allocates on lookup.
+ */
+final class IntIndex {
+
+    private static final int ABSENT = -1;
+
+    private final int[] keys;
+    private final int[] positions;
+    private final int mask;
+
+    /**
+     * @param expectedSize maximum number of keys that will be put
+     */
+    IntIndex(final int expectedSize) {
+        int capacity = 2;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+        mask = capacity - 1;
+    }
+
+    private int slot(final int key) {
+        final int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return false if the key was already present, in which case its position is left unchanged
+     */
+    boolean put(final int key, final int position) {
+        int slot = slot(key);
+        while (positions[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        positions[slot] = position;
+        return true;
+    }
+
+    /**
+     * @return position of the key, or -1 if absent
+     */
+    int get(final int key) {
+        int slot = slot(key);
+        while (positions[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                return positions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+}
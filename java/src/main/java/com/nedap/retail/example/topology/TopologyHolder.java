@@ -0,0 +1,85 @@
+package com.nedap.retail.example.topology;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.rest.ApiCaller;
+import com.nedap.retail.example.rest.HttpRequestException;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.rest.message.GroupInfo;
+
+/**
+ * Holds the current {@link TopologyIndex} of a device. A changed group info is indexed aside and then swapped in,
+ * so readers never lock and always see a complete index.
+ */
+public class TopologyHolder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyHolder.class);
+
+    private volatile TopologyIndex current = TopologyIndex.EMPTY;
+    private ScheduledFuture<?> refreshFuture;
+
+    /**
+     * @return the current index, empty until the first group info is known
+     */
+    public TopologyIndex get() {
+        return current;
+    }
+
+    /**
+     * Replaces the index if the group info changed.
+     *
+     * @param groupInfo group info as retrieved from the device
+     * @return true if the index was replaced
+     */
+    public synchronized boolean update(final GroupInfo groupInfo) {
+        if (groupInfo.equals(current.getSource())) {
+            return false;
+        }
+        current = TopologyIndex.build(groupInfo);
+        LOG.info("Topology updated");
+        return true;
+    }
+
+    /**
+     * Retrieves the group info from the device and updates the index.
+     *
+     * @param api caller of the device
+     * @return true if the index was replaced
+     * @throws HttpRequestException
+     * @throws MessageParsingException
+     */
+    public boolean refresh(final ApiCaller api) throws HttpRequestException, MessageParsingException {
+        return update(api.retrieveGroupInfo());
+    }
+
+    /**
+     * Refreshes the index periodically, starting right away.
+     *
+     * @param api caller of the device, preferably a caching one
+     * @param scheduler scheduler to refresh on
+     * @param periodMillis time between refreshes
+     */
+    public synchronized void startRefreshing(final ApiCaller api, final ScheduledExecutorService scheduler,
+            final long periodMillis) {
+        stopRefreshing();
+        refreshFuture = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh(api);
+            } catch (final HttpRequestException | MessageParsingException e) {
+                LOG.warn("Could not refresh topology, reason {}", e.getMessage());
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopRefreshing() {
+        if (refreshFuture != null) {
+            refreshFuture.cancel(false);
+            refreshFuture = null;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.nedap.retail.example.topology;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.renos.api.v2.rest.message.GroupInfo;
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Immutable index of the groups, units and aisles of a device, built once from its {@link GroupInfo}. Resolves the
+ * ids carried by events to names in constant time, without allocating: ids map to positions in flat arrays, and the
+ * names returned are the strings of the group info itself. See {@link TopologyHolder} for keeping an index current.
+ */
+public final class TopologyIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyIndex.class);
+
+    public static final TopologyIndex EMPTY = build(new GroupInfo(Collections.emptyList()));
+
+    private final GroupInfo source;
+
+    private final Map<String, Integer> groupPositions;
+    private final String[] groupIds;
+    private final String[] groupNames;
+
+    private final IntIndex unitIndex;
+    private final String[] unitNames;
+    private final int[] unitGroups;
+
+    /** Aisle ids by group, since aisle ids need not be unique across groups. */
+    private final IntIndex[] aisleIndexByGroup;
+    /** First aisle with an id, for events without group. */
+    private final IntIndex aisleIndex;
+    private final String[] aisleNames;
+    private final int[] aisleGroups;
+
+    private TopologyIndex(final GroupInfo source, final int groupCount, final int unitCount, final int aisleCount) {
+        this.source = source;
+        groupPositions = new HashMap<>();
+        groupIds = new String[groupCount];
+        groupNames = new String[groupCount];
+        unitIndex = new IntIndex(unitCount);
+        unitNames = new String[unitCount];
+        unitGroups = new int[unitCount];
+        aisleIndexByGroup = new IntIndex[groupCount];
+        aisleIndex = new IntIndex(aisleCount);
+        aisleNames = new String[aisleCount];
+        aisleGroups = new int[aisleCount];
+    }
+
+    /**
+     * @param groupInfo group info as retrieved from the device
+     * @return index of the group info
+     */
+    public static TopologyIndex build(final GroupInfo groupInfo) {
+        final List<GroupInfo.Group> groups = orEmpty(groupInfo.getGroups());
+        int unitCount = 0;
+        int aisleCount = 0;
+        for (final GroupInfo.Group group : groups) {
+            unitCount += orEmpty(group.getUnits()).size();
+            aisleCount += orEmpty(group.getAisles()).size();
+        }
+
+        final TopologyIndex index = new TopologyIndex(groupInfo, groups.size(), unitCount, aisleCount);
+        int unitPosition = 0;
+        int aislePosition = 0;
+        for (int groupPosition = 0; groupPosition < groups.size(); groupPosition++) {
+            final GroupInfo.Group group = groups.get(groupPosition);
+            index.groupIds[groupPosition] = group.getId();
+            index.groupNames[groupPosition] = group.getName();
+            if (group.getId() != null) {
+                index.groupPositions.putIfAbsent(group.getId(), groupPosition);
+            }
+
+            for (final GroupInfo.Unit unit : orEmpty(group.getUnits())) {
+                if (unit.id == null || !index.unitIndex.put(unit.id, unitPosition)) {
+                    LOG.warn("Ignoring unit {} of group {} without unique id", unit.name, group.getId());
+                    continue;
+                }
+                index.unitNames[unitPosition] = unit.name;
+                index.unitGroups[unitPosition] = groupPosition;
+                unitPosition++;
+            }
+
+            final List<GroupInfo.Aisle> aisles = orEmpty(group.getAisles());
+            final IntIndex groupAisles = new IntIndex(aisles.size());
+            index.aisleIndexByGroup[groupPosition] = groupAisles;
+            for (final GroupInfo.Aisle aisle : aisles) {
+                if (aisle.getId() == null || !groupAisles.put(aisle.getId(), aislePosition)) {
+                    LOG.warn("Ignoring aisle of group {} without unique id", group.getId());
+                    continue;
+                }
+                index.aisleIndex.put(aisle.getId(), aislePosition);
+                index.aisleNames[aislePosition] = aisleName(index, aisle);
+                index.aisleGroups[aislePosition] = groupPosition;
+                aislePosition++;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * An aisle has no name of its own; it is named after the units on either side, e.g. "Left - Right".
+     */
+    private static String aisleName(final TopologyIndex index, final GroupInfo.Aisle aisle) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Integer unit : orEmpty(aisle.getUnits())) {
+            final int position = unit != null ? index.unitIndex.get(unit) : -1;
+            if (sb.length() > 0) {
+                sb.append(" - ");
+            }
+            sb.append(position >= 0 && index.unitNames[position] != null ? index.unitNames[position] : unit);
+        }
+        return sb.length() > 0 ? sb.toString() : "Aisle " + aisle.getId();
+    }
+
+    private static <T> List<T> orEmpty(final List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * @return the group info this index was built from
+     */
+    public GroupInfo getSource() {
+        return source;
+    }
+
+    /**
+     * @return name of the group, or null if unknown
+     */
+    public String getGroupName(final String groupId) {
+        final Integer position = groupId != null ? groupPositions.get(groupId) : null;
+        return position != null ? groupNames[position] : null;
+    }
+
+    /**
+     * @return name of the unit, or null if unknown
+     */
+    public String getUnitName(final int unitId) {
+        final int position = unitIndex.get(unitId);
+        return position >= 0 ? unitNames[position] : null;
+    }
+
+    /**
+     * @return id of the group the unit belongs to, or null if unknown
+     */
+    public String getUnitGroupId(final int unitId) {
+        final int position = unitIndex.get(unitId);
+        return position >= 0 ? groupIds[unitGroups[position]] : null;
+    }
+
+    /**
+     * @param groupId group of the aisle, or null to take the first aisle with the id in any group
+     * @return display name of the aisle, or null if unknown
+     */
+    public String getAisleName(final String groupId, final int aisleId) {
+        final int position = aislePosition(groupPosition(groupId), aisleId);
+        return position >= 0 ? aisleNames[position] : null;
+    }
+
+    /**
+     * Resolves where an event was detected.
+     *
+     * @param event event to resolve
+     * @param into receives the names; reused by the caller to avoid allocation
+     * @return true if anything was resolved
+     */
+    public boolean resolve(final Event event, final Location into) {
+        return resolve(event.getGroup(), event.getUnits(), event.getAisle(), into);
+    }
+
+    /**
+     * Resolves where an EPC was detected. Group, units and aisle which the EPC does not carry are taken from the
+     * event.
+     *
+     * @param epc EPC to resolve
+     * @param event event the EPC is part of
+     * @param into receives the names; reused by the caller to avoid allocation
+     * @return true if anything was resolved
+     */
+    public boolean resolve(final Epc epc, final Event event, final Location into) {
+        return resolve(epc.getGroup() != null ? epc.getGroup() : event.getGroup(),
+                epc.getUnits() != null ? epc.getUnits() : event.getUnits(),
+                epc.getAisle() != null ? epc.getAisle() : event.getAisle(), into);
+    }
+
+    private boolean resolve(final String groupId, final List<Integer> units, final Integer aisle,
+            final Location into) {
+        into.clear();
+        int group = groupPosition(groupId);
+
+        // unit ids are unique across groups, aisle ids need not be
+        if (units != null && !units.isEmpty() && units.get(0) != null) {
+            final int position = unitIndex.get(units.get(0));
+            if (position >= 0) {
+                into.unitName = unitNames[position];
+                if (group < 0) {
+                    group = unitGroups[position];
+                }
+            }
+        }
+        if (aisle != null) {
+            final int position = aislePosition(group, aisle);
+            if (position >= 0) {
+                into.aisleName = aisleNames[position];
+                if (group < 0) {
+                    group = aisleGroups[position];
+                }
+            }
+        }
+        if (group >= 0) {
+            into.groupId = groupIds[group];
+            into.groupName = groupNames[group];
+        }
+        return group >= 0 || into.aisleName != null || into.unitName != null;
+    }
+
+    private int groupPosition(final String groupId) {
+        final Integer position = groupId != null ? groupPositions.get(groupId) : null;
+        return position != null ? position : -1;
+    }
+
+    private int aislePosition(final int group, final int aisleId) {
+        return group >= 0 ? aisleIndexByGroup[group].get(aisleId) : aisleIndex.get(aisleId);
+    }
+
+    /**
+     * Names resolved for an event or EPC. Mutable, so that one instance can be reused for every lookup.
+     */
+    public static final class Location {
+
+        private String groupId;
+        private String groupName;
+        private String aisleName;
+        private String unitName;
+
+        void clear() {
+            groupId = null;
+            groupName = null;
+            aisleName = null;
+            unitName = null;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getGroupName() {
+            return groupName;
+        }
+
+        /**
+         * @return name of the aisle, made of the names of its units
+         */
+        public String getAisleName() {
+            return aisleName;
+        }
+
+        /**
+         * @return name of the first unit
+         */
+        public String getUnitName() {
+            return unitName;
+        }
+    }
+}
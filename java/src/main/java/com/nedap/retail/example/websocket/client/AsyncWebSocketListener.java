@@ -0,0 +1,328 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers messages to another listener on dedicated consumer threads, so a slow listener does not stall reading from
+ * the WebSocket. Messages are kept in a preallocated, bounded ring buffer; what happens when it is full is decided by
+ * the {@link OverflowPolicy}.
+ * <p>
+ * Messages spilled to disk are written and read back outside the lock of the ring buffer, so disk I/O does not stall
+ * consumers taking messages from the ring. The files are capped at a number of bytes; messages which do not fit are
+ * dropped.
+ * <p>
+ * With a single consumer thread messages are delivered in the order they were received. With more consumer threads
+ * the delegate must be thread safe and messages may be handled out of order.
+ */
+public class AsyncWebSocketListener implements WebSocketListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncWebSocketListener.class);
+
+    public static final long DEFAULT_MAX_SPILL_BYTES = 256L * 1024 * 1024;
+    private static final long SPILL_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * What to do with a new message when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Stall the WebSocket reader until there is room. */
+        BLOCK,
+        /** Discard the oldest buffered message to make room. */
+        DROP_OLDEST,
+        /** Discard the new message. */
+        DROP_NEWEST,
+        /**
+         * Write the new message to a file on local disk and deliver it later, or discard it when the file has reached
+         * its maximum size.
+         */
+        SPILL_TO_DISK
+    }
+
+    private final WebSocketListener delegate;
+    private final OverflowPolicy policy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // guarded by lock
+    private final String[] ring;
+    private int head;
+    private int size;
+    /** Messages being written to the spill file, which the ring must not overtake. */
+    private int spilling;
+    private final SpillFile spill;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final Thread[] consumers;
+    private volatile boolean running = true;
+
+    public AsyncWebSocketListener(final WebSocketListener delegate, final int capacity, final OverflowPolicy policy) {
+        this(delegate, capacity, policy, 1, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param delegate listener to deliver messages to
+     * @param capacity number of messages that can be buffered in memory
+     * @param policy what to do when the buffer is full
+     * @param consumerThreads number of threads delivering messages to the delegate
+     * @param spillDirectory directory for overflow files, only used with {@link OverflowPolicy#SPILL_TO_DISK}
+     */
+    public AsyncWebSocketListener(final WebSocketListener delegate, final int capacity, final OverflowPolicy policy,
+            final int consumerThreads, final Path spillDirectory) {
+        this(delegate, capacity, policy, consumerThreads, spillDirectory, DEFAULT_MAX_SPILL_BYTES);
+    }
+
+    /**
+     * @param delegate listener to deliver messages to
+     * @param capacity number of messages that can be buffered in memory
+     * @param policy what to do when the buffer is full
+     * @param consumerThreads number of threads delivering messages to the delegate
+     * @param spillDirectory directory for overflow files, only used with {@link OverflowPolicy#SPILL_TO_DISK}
+     * @param maxSpillBytes maximum size of the overflow files together
+     */
+    public AsyncWebSocketListener(final WebSocketListener delegate, final int capacity, final OverflowPolicy policy,
+            final int consumerThreads, final Path spillDirectory, final long maxSpillBytes) {
+        if (capacity <= 0 || consumerThreads <= 0) {
+            throw new IllegalArgumentException("Capacity and number of consumer threads should be positive.");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.ring = new String[capacity];
+        this.spill = policy == OverflowPolicy.SPILL_TO_DISK
+                ? new SpillFile(spillDirectory, SPILL_SEGMENT_BYTES, maxSpillBytes) : null;
+
+        consumers = new Thread[consumerThreads];
+        for (int i = 0; i < consumerThreads; i++) {
+            consumers[i] = new Thread(this::consume, "renos-listener-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+    }
+
+    @Override
+    public void onMessage(final String message) {
+        lock.lock();
+        try {
+            if (!running) {
+                dropped.incrementAndGet();
+                return;
+            }
+            // keep order: once spilling, everything goes to disk until it has been read back
+            boolean toDisk = spill != null && (spilling > 0 || !spill.isEmpty());
+            while (!toDisk && size == ring.length) {
+                switch (policy) {
+                    case BLOCK:
+                        notFull.awaitUninterruptibly();
+                        if (!running) {
+                            dropped.incrementAndGet();
+                            return;
+                        }
+                        continue;
+                    case DROP_OLDEST:
+                        take();
+                        dropped.incrementAndGet();
+                        continue;
+                    case SPILL_TO_DISK:
+                        toDisk = true;
+                        continue;
+                    case DROP_NEWEST:
+                    default:
+                        dropped.incrementAndGet();
+                        return;
+                }
+            }
+            if (!toDisk) {
+                ring[(head + size) % ring.length] = message;
+                size++;
+                notEmpty.signal();
+                return;
+            }
+            spilling++;
+        } finally {
+            lock.unlock();
+        }
+        spill(message);
+    }
+
+    /**
+     * Writes a message to disk, without holding the lock of the ring.
+     */
+    private void spill(final String message) {
+        boolean stored = false;
+        try {
+            stored = spill.append(message);
+            if (!stored) {
+                LOG.debug("Spill file is full, message is dropped");
+            }
+        } catch (final IOException e) {
+            LOG.error("Could not spill message to disk, message is dropped", e);
+        }
+        if (stored) {
+            spilled.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        lock.lock();
+        try {
+            spilling--;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (!running) {
+            // closed while writing, remove what was written
+            closeSpill();
+        }
+    }
+
+    @Override
+    public void onConnectionError() {
+        delegate.onConnectionError();
+    }
+
+    /**
+     * Takes the oldest message from the ring. Must hold lock.
+     */
+    private String take() {
+        final String message = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        notFull.signal();
+        return message;
+    }
+
+    /**
+     * Reads the oldest message from disk, without holding the lock of the ring.
+     *
+     * @return the message, or null if another consumer took the last one
+     */
+    private String pollSpill() {
+        try {
+            return spill.poll();
+        } catch (final IOException e) {
+            LOG.error("Could not read spilled messages from disk, they are dropped", e);
+            dropped.addAndGet(spill.size());
+            closeSpill();
+            return null;
+        }
+    }
+
+    private void consume() {
+        while (running) {
+            String message = null;
+            boolean fromSpill = false;
+            lock.lock();
+            try {
+                while (running) {
+                    if (size > 0) {
+                        message = take();
+                        break;
+                    }
+                    if (spill != null && !spill.isEmpty()) {
+                        fromSpill = true;
+                        break;
+                    }
+                    notEmpty.await(1, TimeUnit.SECONDS);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (fromSpill) {
+                message = pollSpill();
+            }
+
+            if (message != null) {
+                try {
+                    delegate.onMessage(message);
+                    delivered.incrementAndGet();
+                } catch (final RuntimeException e) {
+                    LOG.error("Listener failed to handle message", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of messages waiting to be delivered, in memory and on disk
+     */
+    public long getQueueDepth() {
+        lock.lock();
+        try {
+            return size + (spill != null ? spill.size() : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    /**
+     * @return size of the overflow files on disk
+     */
+    public long getSpillBytes() {
+        return spill != null ? spill.getBytes() : 0;
+    }
+
+    /**
+     * Stops the consumer threads. Messages which have not been delivered yet are discarded.
+     */
+    public void close() {
+        running = false;
+        for (final Thread consumer : consumers) {
+            consumer.interrupt();
+        }
+        lock.lock();
+        try {
+            dropped.addAndGet(size + (spill != null ? spill.size() : 0));
+            while (size > 0) {
+                take();
+            }
+            // release producers stuck on a full buffer
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeSpill();
+    }
+
+    private void closeSpill() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (final IOException e) {
+                LOG.warn("Could not remove spill file", e);
+            }
+        }
+    }
+}
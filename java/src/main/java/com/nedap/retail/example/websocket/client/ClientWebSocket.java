@@ -6,10 +6,14 @@ import org.eclipse.jetty.websocket.api.UpgradeException;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.common.io.AbstractWebSocketConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -24,7 +28,8 @@ public abstract class ClientWebSocket {
 
     private CountDownLatch connectLatch;
 
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    private volatile boolean upgradeRejected = false;
 
     public ClientWebSocket() {
         connectLatch = new CountDownLatch(1);
@@ -49,14 +54,23 @@ public abstract class ClientWebSocket {
     @OnWebSocketError
     public void onError(final Throwable e) {
         if (e instanceof UpgradeException) {
+            upgradeRejected = true;
             LOGGER.info("Handshake failed. Please make sure to be connecting to a compatible device.");
         } else {
             LOGGER.error("An error occurred while communicating via WebSocket", e);
         }
     }
 
-    public void awaitConnect() throws InterruptedException {
+    /**
+     * Must be called before connecting, so that a connect which completes before {@link #awaitConnect()} is called
+     * is not missed.
+     */
+    public void prepareConnect() {
         connectLatch = new CountDownLatch(1);
+        upgradeRejected = false;
+    }
+
+    public void awaitConnect() throws InterruptedException {
         connectLatch.await(10, TimeUnit.SECONDS);
     }
 
@@ -78,7 +92,68 @@ public abstract class ClientWebSocket {
         }
     }
 
+    /**
+     * Drops the connection without a close handshake, for a connection which no longer responds.
+     */
+    public void abort() {
+        final Session current = session;
+        connected = false;
+        if (current != null) {
+            try {
+                current.disconnect();
+            } catch (final IOException e) {
+                LOGGER.debug("There was an error while dropping the connection", e);
+            }
+        }
+    }
+
     public boolean isConnected() {
         return connected;
     }
+
+    /**
+     * @return the object to connect with, which receives the callbacks of Jetty
+     */
+    Object getEndpoint() {
+        return this;
+    }
+
+    /**
+     * @return true if the last attempt to connect failed because the device did not accept the upgrade request
+     */
+    public boolean isUpgradeRejected() {
+        return upgradeRejected;
+    }
+
+    /**
+     * @param extension name of a WebSocket extension, e.g. permessage-deflate
+     * @return true if the extension was negotiated for the current connection
+     */
+    public boolean isNegotiated(final String extension) {
+        final Session current = session;
+        final List<ExtensionConfig> extensions = current != null && current.getUpgradeResponse() != null
+                ? current.getUpgradeResponse().getExtensions() : null;
+        if (extensions == null) {
+            return false;
+        }
+        for (final ExtensionConfig config : extensions) {
+            if (extension.equals(config.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return bytes read from the network on the current connection since the handshake, before decompression, or -1
+     *         if unknown
+     */
+    protected long getWireBytesIn() {
+        final Session current = session;
+        if (current instanceof WebSocketSession
+                && ((WebSocketSession) current).getConnection() instanceof AbstractWebSocketConnection) {
+            return ((AbstractWebSocketConnection) ((WebSocketSession) current).getConnection()).getBytesIn();
+        }
+        return -1;
+    }
 }
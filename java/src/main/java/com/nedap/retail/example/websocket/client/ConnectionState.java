@@ -0,0 +1,17 @@
+package com.nedap.retail.example.websocket.client;
+
+/**
+ * State of the connection of a client to the events socket of a device.
+ */
+public enum ConnectionState {
+    /** Not connected, and no attempt to connect is pending. */
+    DISCONNECTED,
+    /** Connecting or authenticating. */
+    CONNECTING,
+    /** Connected to the device. */
+    CONNECTED,
+    /** Connection was lost, waiting for the next attempt to reconnect. */
+    RECONNECTING,
+    /** Client was finished and will not connect again. */
+    CLOSED
+}
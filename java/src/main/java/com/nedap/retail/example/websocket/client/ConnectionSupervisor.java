@@ -0,0 +1,145 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.rest.MessageParsingException;
+
+/**
+ * Detects dead connections of a {@link RenosWebSocketClient}. A heartbeat is sent periodically; every frame received
+ * proves that the connection is alive, and the first response after a heartbeat gives its round-trip time. When no
+ * frame at all was received after a number of heartbeats, or when the connection was closed without being asked to,
+ * the client reconnects.
+ */
+public class ConnectionSupervisor implements WebSocketListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionSupervisor.class);
+
+    private final RenosWebSocketClient client;
+    private final long heartbeatIntervalMillis;
+    private final int maxMissedHeartbeats;
+
+    private ScheduledFuture<?> future;
+
+    /** Time the outstanding heartbeat was sent, or 0 when its response was received. */
+    private volatile long heartbeatSentNanos;
+    private volatile long lastFrameNanos;
+    private volatile long lastRoundTripNanos = -1;
+    private volatile long smoothedRoundTripNanos = -1;
+    private volatile int missedHeartbeats;
+
+    /**
+     * @param client client to supervise
+     * @param heartbeatIntervalMillis time between heartbeats
+     * @param maxMissedHeartbeats number of heartbeats without any frame received after which the connection is dead
+     */
+    public ConnectionSupervisor(final RenosWebSocketClient client, final long heartbeatIntervalMillis,
+            final int maxMissedHeartbeats) {
+        this.client = client;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+    }
+
+    synchronized void start(final ScheduledExecutorService scheduler) {
+        if (future == null) {
+            future = scheduler.scheduleWithFixedDelay(this::check, heartbeatIntervalMillis, heartbeatIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void onMessage(final String message) {
+        final long now = System.nanoTime();
+        lastFrameNanos = now;
+        missedHeartbeats = 0;
+
+        final long sent = heartbeatSentNanos;
+        if (sent != 0 && isResponse(message)) {
+            heartbeatSentNanos = 0;
+            final long roundTrip = now - sent;
+            lastRoundTripNanos = roundTrip;
+            // same smoothing as TCP uses for its round-trip time
+            final long smoothed = smoothedRoundTripNanos;
+            smoothedRoundTripNanos = smoothed < 0 ? roundTrip : smoothed + (roundTrip - smoothed) / 8;
+        }
+    }
+
+    private static boolean isResponse(final String message) {
+        try {
+            return MessageDispatcher.classify(message).getKind() == MessageDispatcher.MessageKind.RESPONSE;
+        } catch (final MessageParsingException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void onConnectionError() {
+        // reconnecting is up to the client
+    }
+
+    private void check() {
+        try {
+            if (client.getConnectionState() != ConnectionState.CONNECTED) {
+                heartbeatSentNanos = 0;
+                missedHeartbeats = 0;
+                return;
+            }
+            if (!client.isConnected()) {
+                LOG.warn("Connection to {} was closed, reconnecting", client.getDeviceUrl());
+                client.connectionLost();
+                return;
+            }
+
+            final long sent = heartbeatSentNanos;
+            if (sent != 0 && lastFrameNanos - sent < 0) {
+                missedHeartbeats++;
+                LOG.debug("No reply to heartbeat from {}, {} missed", client.getDeviceUrl(), missedHeartbeats);
+                if (missedHeartbeats >= maxMissedHeartbeats) {
+                    LOG.warn("Connection to {} is dead after {} missed heartbeats, reconnecting",
+                            client.getDeviceUrl(), missedHeartbeats);
+                    heartbeatSentNanos = 0;
+                    missedHeartbeats = 0;
+                    client.connectionLost();
+                    return;
+                }
+            }
+            // a heartbeat which is still unanswered is superseded, its round trip is no longer measurable
+            heartbeatSentNanos = System.nanoTime();
+            client.heartbeat();
+        } catch (final Exception e) {
+            LOG.error("There was an error while supervising the connection to {}", client.getDeviceUrl(), e);
+        }
+    }
+
+    /**
+     * @return round-trip time of the last answered heartbeat in nanoseconds, or -1 if none was answered yet
+     */
+    public long getLastRoundTripNanos() {
+        return lastRoundTripNanos;
+    }
+
+    /**
+     * @return smoothed round-trip time of heartbeats in nanoseconds, or -1 if none was answered yet
+     */
+    public long getSmoothedRoundTripNanos() {
+        return smoothedRoundTripNanos;
+    }
+
+    /**
+     * @return number of consecutive heartbeats after which no frame was received
+     */
+    public int getMissedHeartbeats() {
+        return missedHeartbeats;
+    }
+}
@@ -0,0 +1,40 @@
+package com.nedap.retail.example.websocket.client;
+
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Receives the EPCs of RFID observation and move events one by one while the frame is being read, so that frames of
+ * any size are handled in constant memory. See {@link RenosWebSocketClient#setEpcStreamListener(EpcStreamListener)}.
+ * <p>
+ * Renos sends the EPCs before the other fields of an event, so the id, time, group, units and aisle of the event are
+ * only known once all its EPCs have been handed over. Calls for one event are made on one thread, and events are
+ * handed over one after the other.
+ */
+public interface EpcStreamListener {
+
+    /**
+     * An RFID observation or move event starts; its EPCs follow.
+     *
+     * @param type type of the event
+     */
+    void onEventStart(EventType type);
+
+    /**
+     * An EPC of the current event. The instance and its list of units are reused for the next EPC, so copy what needs
+     * to be kept. Group, units and aisle the EPC does not carry are those of the event.
+     *
+     * @param epc the EPC
+     */
+    void onEpc(Epc epc);
+
+    /**
+     * The current event ends.
+     *
+     * @param event the event without its EPCs, or null if the rest of the frame could not be decoded
+     * @param duplicate true if the event was received before, which happens for the overlap of a subscription resumed
+     *            after a reconnect; its EPCs have been handed over nevertheless
+     */
+    void onEventEnd(Event event, boolean duplicate);
+}
@@ -0,0 +1,20 @@
+package com.nedap.retail.example.websocket.client;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
+/**
+ * Handles decoded events of one type, see {@link EventHandlerRegistry}.
+ *
+ * @param <T> class of the events
+ */
+@FunctionalInterface
+public interface EventHandler<T extends Event> {
+
+    /**
+     * Called on the thread that received the event. The event is shared with the other handlers of its type, so it
+     * should not be modified.
+     *
+     * @param event the decoded event
+     */
+    void onEvent(T event);
+}
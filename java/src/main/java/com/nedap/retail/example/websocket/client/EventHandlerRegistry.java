@@ -0,0 +1,132 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+
+/**
+ * Handlers of decoded events by event type. Every handler of a type is given the same decoded event. The handlers of
+ * each type are kept in an array which is replaced on every change, so that dispatching neither locks nor allocates;
+ * changes are expected to be rare.
+ */
+public class EventHandlerRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventHandlerRegistry.class);
+
+    private static final EventHandler<?>[] NONE = new EventHandler<?>[0];
+
+    /** Holds an entry for every type from the start, so that the map itself is never modified afterwards. */
+    private final Map<EventType, Handlers> handlers = new EnumMap<>(EventType.class);
+
+    private volatile int handlerCount;
+
+    public EventHandlerRegistry() {
+        for (final EventType type : EventType.values()) {
+            handlers.put(type, new Handlers());
+        }
+    }
+
+    /**
+     * Registers a handler of events of one type.
+     *
+     * @param type type of the events
+     * @param eventClass class the events are decoded into, or a superclass of it
+     * @param handler handler to call for every event of the type
+     * @throws IllegalArgumentException if events of the type are not decoded into the class
+     */
+    public <T extends Event> void on(final EventType type, final Class<T> eventClass,
+            final EventHandler<? super T> handler) {
+        final Class<? extends Event> decodedClass = MessageDispatcher.eventClass(type);
+        if (decodedClass == null || !eventClass.isAssignableFrom(decodedClass)) {
+            throw new IllegalArgumentException(type + " events are not decoded into " + eventClass.getSimpleName());
+        }
+        synchronized (this) {
+            final Handlers entry = handlers.get(type);
+            final EventHandler<?>[] current = entry.handlers;
+            final EventHandler<?>[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = handler;
+            entry.handlers = updated;
+            handlerCount++;
+        }
+    }
+
+    /**
+     * Removes a handler registered for a type.
+     *
+     * @return true if it was registered
+     */
+    public synchronized boolean off(final EventType type, final EventHandler<?> handler) {
+        final Handlers entry = handlers.get(type);
+        final EventHandler<?>[] current = entry.handlers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == handler) {
+                final EventHandler<?>[] updated = current.length == 1 ? NONE : new EventHandler<?>[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                entry.handlers = updated;
+                handlerCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if no handler is registered for any type
+     */
+    public boolean isEmpty() {
+        return handlerCount == 0;
+    }
+
+    /**
+     * @return true if a handler is registered for the type
+     */
+    public boolean hasHandlers(final EventType type) {
+        return type != null && handlers.get(type).handlers.length > 0;
+    }
+
+    /**
+     * Decodes a frame if a handler is registered for its type, and hands the event to every such handler. A handler
+     * which fails does not keep the others from being called.
+     *
+     * @param message JSON message received from Renos
+     * @throws MessageParsingException if the message is an event of interest which could not be decoded
+     */
+    public void dispatch(final String message) throws MessageParsingException {
+        if (isEmpty()) {
+            return;
+        }
+        final MessageDispatcher.Header header = MessageDispatcher.classify(message);
+        if (header.getKind() == MessageDispatcher.MessageKind.EVENT && hasHandlers(header.getEventType())) {
+            dispatch(MessageDispatcher.decodeEvent(message, header.getEventType()));
+        }
+    }
+
+    /**
+     * Hands a decoded event to the handlers of its type.
+     *
+     * @param event the event
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void dispatch(final Event event) {
+        for (final EventHandler handler : handlers.get(event.getType()).handlers) {
+            try {
+                handler.onEvent(event);
+            } catch (final RuntimeException e) {
+                LOG.error("There was an error while handling a {} event", event.getType(), e);
+            }
+        }
+    }
+
+    private static final class Handlers {
+
+        private volatile EventHandler<?>[] handlers = NONE;
+    }
+}
@@ -0,0 +1,111 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.rest.MessageParsingException;
+
+/**
+ * Tracks the newest event received on a connection, so that a subscription can be resumed from there after a
+ * reconnect, and drops events that were already received, which happens for the overlap of such a resumed
+ * subscription.
+ */
+public class EventWatermark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventWatermark.class);
+
+    private static final int DEFAULT_MAX_IDS = 4096;
+
+    private final Map<String, Boolean> recentIds;
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+
+    private String newestTime;
+    private long newestMillis = Long.MIN_VALUE;
+    private long duplicates;
+
+    public EventWatermark() {
+        this(DEFAULT_MAX_IDS);
+    }
+
+    /**
+     * @param maxIds number of most recent event ids remembered to recognize duplicates
+     */
+    public EventWatermark(final int maxIds) {
+        recentIds = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > maxIds;
+            }
+        };
+    }
+
+    /**
+     * Records a received message.
+     *
+     * @param message JSON message received from Renos
+     * @return false if the message is an event that was received before, true otherwise
+     */
+    public boolean accept(final String message) {
+        final MessageDispatcher.Header header;
+        try {
+            header = MessageDispatcher.identify(message);
+        } catch (final MessageParsingException e) {
+            // left to the listeners to report
+            return true;
+        }
+        return header.getKind() != MessageDispatcher.MessageKind.EVENT || accept(header.getId(), header.getTime());
+    }
+
+    /**
+     * Records a received event.
+     *
+     * @param id id of the event, or null
+     * @param time time of the event as sent by Renos, or null
+     * @return false if the event was received before
+     */
+    public synchronized boolean accept(final String id, final String time) {
+        if (id != null && recentIds.put(id, Boolean.TRUE) != null) {
+            duplicates++;
+            LOG.debug("Dropped event {} which was already received", id);
+            return false;
+        }
+        advance(time);
+        return true;
+    }
+
+    private void advance(final String time) {
+        if (time == null) {
+            return;
+        }
+        try {
+            final long millis = timestamps.toEpochMillis(time);
+            if (millis > newestMillis) {
+                newestMillis = millis;
+                newestTime = time;
+            }
+        } catch (final DateTimeParseException e) {
+            LOG.debug("Event time {} could not be parsed", time);
+        }
+    }
+
+    /**
+     * @return time of the newest event received, as sent by Renos, or null if no event was received yet
+     */
+    public synchronized String getNewestTime() {
+        return newestTime;
+    }
+
+    /**
+     * @return number of events dropped because they were received before
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+}
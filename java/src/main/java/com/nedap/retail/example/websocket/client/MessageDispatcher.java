@@ -0,0 +1,246 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.renos.api.v2.ws.message.*;
+import com.nedap.retail.renos.json.JsonMapper;
+
+/**
+ * Classifies messages received from Renos by their top-level discriminator key and decodes them with the matching
+ * typed decoder.
+ */
+public final class MessageDispatcher {
+
+    private static final String EVENT_KEY = "event";
+    private static final String RESPONSE_KEY = "response";
+    private static final String ID_KEY = "id";
+    private static final String TIME_KEY = "time";
+
+    /**
+     * Event labels as used on the wire, see {@link Event.EventTypeAdapterFactory}.
+     */
+    private static final Map<String, EventType> EVENT_TYPES = new HashMap<>();
+    private static final Map<EventType, Class<? extends Event>> EVENT_CLASSES = new EnumMap<>(EventType.class);
+
+    static {
+        register("rf_alarm", EventType.RF_ALARM, RfAlarmEvent.class);
+        register("rf_jammer", EventType.RF_JAMMER, RfJammerEvent.class);
+        register("rfid_alarm", EventType.RFID_ALARM, RfidAlarmEvent.class);
+        register("ir_direction", EventType.IR_DIRECTION, IrDirectionEvent.class);
+        register("metal_alarm", EventType.METAL_ALARM, MetalAlarmEvent.class);
+        register("magnet_observation", EventType.MAGNET_OBSERVATION, MagnetObservationEvent.class);
+        register("trolley_observation", EventType.TROLLEY_OBSERVATION, TrolleyObservationEvent.class);
+        register("rfid_observation", EventType.RFID_OBSERVATION, RfidObservationEvent.class);
+        register("rfid_move", EventType.RFID_MOVE, RfidMoveEvent.class);
+        register("input", EventType.INPUT_OBSERVATION, InputObservationEvent.class);
+        register("sd_label_detect", EventType.SD_LABEL_DETECT, SdLabelDetectEvent.class);
+    }
+
+    private static final Header UNKNOWN = new Header(MessageKind.UNKNOWN, null, null, null, null);
+
+    private MessageDispatcher() {
+    }
+
+    private static void register(final String label, final EventType type, final Class<? extends Event> clazz) {
+        EVENT_TYPES.put(label, type);
+        EVENT_CLASSES.put(type, clazz);
+    }
+
+    /**
+     * Kind of message, determined by its top-level discriminator key.
+     */
+    public enum MessageKind {
+        EVENT, RESPONSE, UNKNOWN
+    }
+
+    /**
+     * Result of classifying a message.
+     */
+    public static final class Header {
+
+        private final MessageKind kind;
+        private final String label;
+        private final EventType eventType;
+        private final String id;
+        private final String time;
+
+        private Header(final MessageKind kind, final String label, final EventType eventType, final String id,
+                final String time) {
+            this.kind = kind;
+            this.label = label;
+            this.eventType = eventType;
+            this.id = id;
+            this.time = time;
+        }
+
+        public MessageKind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return value of the discriminator key as sent by Renos, e.g. "rfid_observation"
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return type of the event, or null if this is not an event or the event type is not known
+         */
+        public EventType getEventType() {
+            return eventType;
+        }
+
+        /**
+         * @return id of the event, or null if not read, see {@link MessageDispatcher#identify(String)}
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return time of the event, or null if not read, see {@link MessageDispatcher#identify(String)}
+         */
+        public String getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * Reads the top-level keys of the message until the "event" or "response" discriminator is found. Only keys of the
+     * outer object are considered, so values nested anywhere else (e.g. EPC data) never influence the result.
+     *
+     * @param message JSON message received from Renos
+     * @return header describing the message
+     * @throws MessageParsingException if the message is not valid JSON
+     */
+    public static Header classify(final String message) throws MessageParsingException {
+        try (JsonReader reader = new JsonReader(new StringReader(message))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return UNKNOWN;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (reader.peek() == JsonToken.STRING && EVENT_KEY.equals(name)) {
+                    final String label = reader.nextString();
+                    return new Header(MessageKind.EVENT, label, EVENT_TYPES.get(label), null, null);
+                } else if (reader.peek() == JsonToken.STRING && RESPONSE_KEY.equals(name)) {
+                    return new Header(MessageKind.RESPONSE, reader.nextString(), null, null, null);
+                }
+                reader.skipValue();
+            }
+            return UNKNOWN;
+        } catch (final IOException | IllegalStateException e) {
+            throw new MessageParsingException("message");
+        }
+    }
+
+    /**
+     * Like {@link #classify(String)}, but reads all top-level keys, so that the id and time of an event are known as
+     * well. Nested values such as the EPC list are skipped without being decoded.
+     *
+     * @param message JSON message received from Renos
+     * @return header describing the message
+     * @throws MessageParsingException if the message is not valid JSON
+     */
+    public static Header identify(final String message) throws MessageParsingException {
+        try (JsonReader reader = new JsonReader(new StringReader(message))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return UNKNOWN;
+            }
+            MessageKind kind = MessageKind.UNKNOWN;
+            String label = null;
+            String id = null;
+            String time = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (reader.peek() != JsonToken.STRING) {
+                    reader.skipValue();
+                } else if (EVENT_KEY.equals(name)) {
+                    kind = MessageKind.EVENT;
+                    label = reader.nextString();
+                } else if (RESPONSE_KEY.equals(name)) {
+                    return new Header(MessageKind.RESPONSE, reader.nextString(), null, null, null);
+                } else if (ID_KEY.equals(name)) {
+                    id = reader.nextString();
+                } else if (TIME_KEY.equals(name)) {
+                    time = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            return kind == MessageKind.EVENT ? new Header(kind, label, EVENT_TYPES.get(label), id, time) : UNKNOWN;
+        } catch (final IOException | IllegalStateException e) {
+            throw new MessageParsingException("message");
+        }
+    }
+
+    /**
+     * Decodes an event directly into its concrete class.
+     *
+     * @param message JSON message received from Renos
+     * @param eventType type of the event, as found by {@link #classify(String)}
+     * @return decoded event
+     * @throws MessageParsingException if the event type is unknown or the message could not be decoded
+     */
+    public static <T extends Event> T decodeEvent(final String message, final EventType eventType)
+            throws MessageParsingException {
+        if (eventType == null) {
+            throw new MessageParsingException(EVENT_KEY);
+        }
+        @SuppressWarnings("unchecked")
+        final Class<T> clazz = (Class<T>) EVENT_CLASSES.get(eventType);
+        try {
+            return Optional.ofNullable(JsonMapper.fromJson(clazz, message)).filter(event -> event.getType() != null)
+                    .orElseThrow(() -> new MessageParsingException(EVENT_KEY));
+        } catch (final JsonParseException e) {
+            throw new MessageParsingException(EVENT_KEY);
+        }
+    }
+
+    /**
+     * @param label value of the discriminator key as sent by Renos, e.g. "rfid_observation"
+     * @return type of the event, or null if not known
+     */
+    public static EventType eventType(final String label) {
+        return EVENT_TYPES.get(label);
+    }
+
+    /**
+     * @return concrete class of events of the given type
+     */
+    public static Class<? extends Event> eventClass(final EventType eventType) {
+        return EVENT_CLASSES.get(eventType);
+    }
+
+    /**
+     * Decodes a response.
+     *
+     * @param message JSON message received from Renos
+     * @return decoded response
+     * @throws MessageParsingException if the message could not be decoded
+     */
+    public static Response decodeResponse(final String message) throws MessageParsingException {
+        try {
+            return Optional.ofNullable(MessageParser.parseResponse(message))
+                    .filter(response -> response.getResponse() != null)
+                    .orElseThrow(() -> new MessageParsingException(RESPONSE_KEY));
+        } catch (final JsonParseException e) {
+            throw new MessageParsingException(RESPONSE_KEY);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.nedap.retail.example.websocket.client;
+
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+
+/**
+ * The permessage-deflate extension (RFC 7692) as offered to the device when connecting. Frames of RFID events repeat
+ * the same keys for every EPC and typically shrink to a fraction of their size.
+ * <p>
+ * The window of the device can be limited, which saves memory on the device at some cost in compression. The window
+ * of the client cannot: the Jetty client always deflates with a full window, so it does not offer to limit it. Without
+ * context takeover, every message is compressed on its own, which saves memory between messages at a larger cost in
+ * compression.
+ */
+public final class PerMessageDeflateOffer {
+
+    public static final String EXTENSION_NAME = "permessage-deflate";
+
+    /** Full windows and context takeover on both sides: the best compression. */
+    public static final PerMessageDeflateOffer DEFAULT = new PerMessageDeflateOffer(0, false, false);
+
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private final int serverMaxWindowBits;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+
+    /**
+     * @param serverMaxWindowBits base-2 logarithm of the window the device may compress with, 8 to 15, or 0 to leave
+     *            it to the device
+     * @param serverNoContextTakeover whether the device should compress every message on its own
+     * @param clientNoContextTakeover whether the client should compress every message on its own
+     */
+    public PerMessageDeflateOffer(final int serverMaxWindowBits, final boolean serverNoContextTakeover,
+            final boolean clientNoContextTakeover) {
+        if (serverMaxWindowBits != 0
+                && (serverMaxWindowBits < MIN_WINDOW_BITS || serverMaxWindowBits > MAX_WINDOW_BITS)) {
+            throw new IllegalArgumentException("The window bits should be between 8 and 15, or 0.");
+        }
+        this.serverMaxWindowBits = serverMaxWindowBits;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    /**
+     * @return the offer as extension of an upgrade request
+     */
+    public ExtensionConfig toExtensionConfig() {
+        final ExtensionConfig config = new ExtensionConfig(EXTENSION_NAME);
+        if (serverMaxWindowBits != 0) {
+            config.setParameter("server_max_window_bits", serverMaxWindowBits);
+        }
+        if (serverNoContextTakeover) {
+            config.setParameter("server_no_context_takeover");
+        }
+        if (clientNoContextTakeover) {
+            config.setParameter("client_no_context_takeover");
+        }
+        return config;
+    }
+
+    public int getServerMaxWindowBits() {
+        return serverMaxWindowBits;
+    }
+
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
+    @Override
+    public String toString() {
+        return toExtensionConfig().getParameterizedName();
+    }
+}
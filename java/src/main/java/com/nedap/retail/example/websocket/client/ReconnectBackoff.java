@@ -0,0 +1,46 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Capped exponential backoff with jitter. The delay doubles with every failed attempt up to the cap, and a random
+ * part of up to half the delay is left out, so that clients which lost their connection at the same moment do not
+ * all reconnect at the same moment.
+ */
+public class ReconnectBackoff {
+
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+
+    private int attempts;
+
+    /**
+     * @param minDelayMillis delay before the first attempt, before jitter
+     * @param maxDelayMillis maximum delay, before jitter
+     */
+    public ReconnectBackoff(final long minDelayMillis, final long maxDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @return delay before the next attempt in milliseconds
+     */
+    public synchronized long nextDelayMillis() {
+        final long delay = Math.min(maxDelayMillis, minDelayMillis << Math.min(attempts, 30));
+        attempts++;
+        final long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * Starts over with the minimum delay, after a successful connect.
+     */
+    public synchronized void reset() {
+        attempts = 0;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+}
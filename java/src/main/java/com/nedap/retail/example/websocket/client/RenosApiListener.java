@@ -1,14 +1,19 @@
 package com.nedap.retail.example.websocket.client;
 
-import java.io.IOException;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.metrics.ClientMetrics;
 import com.nedap.retail.example.rest.MessageParsingException;
-import com.nedap.retail.renos.api.v2.ws.MessageParser;
+import com.nedap.retail.example.rfid.EpcDeduplicator;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.example.topology.TopologyHolder;
+import com.nedap.retail.example.topology.TopologyIndex;
 import com.nedap.retail.renos.api.v2.ws.message.*;
 
 /**
@@ -18,50 +23,126 @@ public class RenosApiListener implements WebSocketListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(RenosApiListener.class);
 
+    private static final int HTTP_BAD_REQUEST = 400;
+
     private final RenosWebSocketClient client;
+    private final List<EventSink> sinks = new CopyOnWriteArrayList<>();
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+    private final EventHandlerRegistry handlers = new EventHandlerRegistry();
+
+    private EpcDeduplicator deduplicator;
+    private TopologyHolder topology;
+    private volatile ClientMetrics metrics;
 
     public RenosApiListener(final RenosWebSocketClient client) {
         this.client = client;
     }
 
+    /**
+     * Suppresses repeated sightings of the same EPCs in RFID observation and move events.
+     *
+     * @param deduplicator to filter EPCs with, or null to handle every sighting
+     */
+    public void setDeduplicator(final EpcDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Adds the names of groups, units and aisles to the events logged.
+     *
+     * @param topology topology of the device, or null to log ids only
+     */
+    public void setTopology(final TopologyHolder topology) {
+        this.topology = topology;
+    }
+
+    /**
+     * @param metrics metrics to record parse latency, failures and lag in, or null to stop recording
+     */
+    public void setMetrics(final ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Hands every event over to a sink instead of logging it. Sinks are not closed by this listener.
+     *
+     * @param sink to hand events to
+     */
+    public void addSink(final EventSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(final EventSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Handlers are given the events decoded by this listener, so a frame is decoded only once. They are called on the
+     * thread which delivers the frame to this listener, before de-duplication and the sinks, and should not modify
+     * the events.
+     *
+     * @return handlers of decoded events
+     */
+    public EventHandlerRegistry getHandlers() {
+        return handlers;
+    }
+
     @Override
     public void onMessage(final String message) {
+        final ClientMetrics clientMetrics = metrics;
+        final long start = clientMetrics != null ? System.nanoTime() : 0;
         try {
-            if (message.contains("response")) {
-                handleResponse(message);
-            } else if (message.contains("event")) {
-                handleEvent(message);
+            final MessageDispatcher.Header header = MessageDispatcher.classify(message);
+            switch (header.getKind()) {
+                case RESPONSE:
+                    final Response response = MessageDispatcher.decodeResponse(message);
+                    if (clientMetrics != null) {
+                        clientMetrics.recordResponse();
+                    }
+                    handleResponse(response);
+                    break;
+                case EVENT:
+                    final Event event = MessageDispatcher.decodeEvent(message, header.getEventType());
+                    if (clientMetrics != null) {
+                        clientMetrics.recordEvent(header.getEventType(), message, System.nanoTime() - start);
+                        recordLag(clientMetrics, event);
+                    }
+                    handlers.dispatch(event);
+                    handleEvent(event);
+                    break;
+                default:
+                    // not a Renos API message
             }
         } catch (final MessageParsingException e) {
+            if (clientMetrics != null) {
+                clientMetrics.recordParseFailure();
+            }
             LOG.info("The incoming message could not be parsed.");
         } catch (final Exception e) {
             LOG.error("There was an error while handling the Renos API message", e);
         }
     }
 
-    private static Response parseResponse(final String message) throws MessageParsingException {
-        try {
-            return Optional.ofNullable(MessageParser.parseResponse(message))
-                    .filter(response -> response.getResponse() != null)
-                    .orElseThrow(() -> new MessageParsingException("response"));
-        } catch (final IOException e) {
-            throw new MessageParsingException("response");
+    private void recordLag(final ClientMetrics clientMetrics, final Event event) {
+        if (event.getTime() == null) {
+            return;
         }
-    }
-
-    private static Event parseEvent(final String message) throws MessageParsingException {
         try {
-            return Optional.ofNullable(MessageParser.parseEvent(message)).filter(event -> event.getType() != null)
-                    .orElseThrow(() -> new MessageParsingException("event"));
-        } catch (final IOException e) {
-            throw new MessageParsingException("event");
+            final long eventMillis = timestamps.toEpochMillis(event.getTime());
+            clientMetrics.recordLag(event.getType(), System.currentTimeMillis() - eventMillis);
+        } catch (final DateTimeParseException e) {
+            // no lag without a valid time
         }
     }
 
-    private void handleResponse(final String message) throws MessageParsingException {
-        final Response response = parseResponse(message);
+    private void handleResponse(final Response response) {
         switch (response.getResponse()) {
             case UNKNOWN:
+                // the API library writes every response as unknown, so only its code tells an error apart
+                if (response.getCode() < HTTP_BAD_REQUEST) {
+                    LOG.info("Received response: {} {}", response.getCode(), response.getContent().getMessage());
+                    break;
+                }
                 LOG.error("There was an error with the sent request: {}", response.getContent().getMessage());
                 break;
             default:
@@ -69,8 +150,19 @@ public class RenosApiListener implements WebSocketListener {
         }
     }
 
-    private void handleEvent(final String message) throws MessageParsingException {
-        final Event event = parseEvent(message);
+    private void handleEvent(final Event event) {
+        if (deduplicator != null && isRfidReadEvent(event) && deduplicator.filter(event) == 0) {
+            // only sightings of EPCs which were seen recently
+            return;
+        }
+
+        if (!sinks.isEmpty()) {
+            for (final EventSink sink : sinks) {
+                sink.accept(client.getDeviceUrl(), event);
+            }
+            return;
+        }
+
         final StringBuilder sb = new StringBuilder();
         sb.append("Received ").append(event.getType()).append(",");
         sb.append(" detected");
@@ -83,6 +175,12 @@ public class RenosApiListener implements WebSocketListener {
         if (event.getGroup() != null) {
             sb.append(" in group ").append(event.getGroup());
         }
+        final TopologyIndex index = topology != null ? topology.get() : null;
+        // one per event, as events may be handled on several threads
+        final TopologyIndex.Location location = index != null ? new TopologyIndex.Location() : null;
+        if (index != null && index.resolve(event, location)) {
+            appendLocation(sb, location);
+        }
         sb.append(" at ").append(event.getTime());
         if (event.getDirection() != null) {
             sb.append(" with direction ").append(event.getDirection());
@@ -116,11 +214,32 @@ public class RenosApiListener implements WebSocketListener {
         LOG.info(sb.toString());
 
         if (epcs != null) {
-            printEpcs(epcs);
+            printEpcs(event, epcs, index, location);
         }
     }
 
-    private void printEpcs(final List<Epc> epcs) {
+    private static void appendLocation(final StringBuilder sb, final TopologyIndex.Location location) {
+        final String group = location.getGroupName() != null ? location.getGroupName() : location.getGroupId();
+        final String place = location.getAisleName() != null ? location.getAisleName() : location.getUnitName();
+        sb.append(" (");
+        if (group != null) {
+            sb.append(group);
+        }
+        if (group != null && place != null) {
+            sb.append(", ");
+        }
+        if (place != null) {
+            sb.append(place);
+        }
+        sb.append(")");
+    }
+
+    private static boolean isRfidReadEvent(final Event event) {
+        return event.getType() == EventType.RFID_OBSERVATION || event.getType() == EventType.RFID_MOVE;
+    }
+
+    private void printEpcs(final Event event, final List<Epc> epcs, final TopologyIndex index,
+            final TopologyIndex.Location location) {
         for (final Epc epc : epcs) {
             final StringBuilder sb = new StringBuilder();
             sb.append(epc.getEpc());
@@ -137,6 +256,9 @@ public class RenosApiListener implements WebSocketListener {
             if (epc.getGroup() != null) {
                 sb.append(" in group ").append(epc.getGroup());
             }
+            if (index != null && index.resolve(epc, event, location)) {
+                appendLocation(sb, location);
+            }
             sb.append(" at ").append(epc.getTime());
 
             LOG.info("   {}", sb.toString());
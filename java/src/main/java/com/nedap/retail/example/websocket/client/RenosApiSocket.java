@@ -1,33 +1,265 @@
 package com.nedap.retail.example.websocket.client;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
-import java.util.ArrayList;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 
+import com.nedap.retail.example.event.TimestampDecoder;
+import com.nedap.retail.example.journal.FrameJournal;
+import com.nedap.retail.example.metrics.ClientMetrics;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+
 /**
  * Used to connect to Renos V2 API WebSocket server.
  */
 @WebSocket
 public class RenosApiSocket extends ClientWebSocket {
 
-    private List<WebSocketListener> listeners = new ArrayList<>();
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    private final List<WebSocketListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FrameJournal journal;
+    private String source;
+    private volatile EventWatermark watermark;
+    private volatile ClientMetrics metrics;
+    private volatile EpcStreamListener epcStreamListener;
+    private final StreamingEndpoint streamingEndpoint = new StreamingEndpoint(this);
+    /** Guards the decoder, and keeps streamed messages in order, as Jetty hands each to a thread of its own. */
+    private final Object streamLock = new Object();
+    private final StreamingEventDecoder decoder = new StreamingEventDecoder();
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+    /** Bytes read from the network on the current connection as of the last frame, on the read thread only. */
+    private long wireBytesRecorded;
 
     public void subscribe(final WebSocketListener listener) {
         listeners.add(listener);
     }
 
+    public void unsubscribe(final WebSocketListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Writes every received frame to a journal.
+     *
+     * @param journal journal to write to, or null to stop journaling
+     * @param source name of the device the frames are received from
+     */
+    public void setJournal(final FrameJournal journal, final String source) {
+        this.source = source;
+        this.journal = journal;
+    }
+
+    /**
+     * Tracks received events and drops events that were received before.
+     *
+     * @param watermark watermark to record events in, or null to pass every event
+     */
+    public void setWatermark(final EventWatermark watermark) {
+        this.watermark = watermark;
+    }
+
+    /**
+     * @param metrics metrics to record received frames in, or null to stop recording
+     */
+    public void setMetrics(final ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Receives messages as a stream from the next connect on, and hands the EPCs of RFID observation and move events
+     * to a listener one by one.
+     *
+     * @param listener to hand EPCs to, or null to receive every message as a string
+     */
+    public void setEpcStreamListener(final EpcStreamListener listener) {
+        this.epcStreamListener = listener;
+    }
+
+    @Override
+    Object getEndpoint() {
+        return epcStreamListener != null ? streamingEndpoint : this;
+    }
+
+    @Override
+    public void prepareConnect() {
+        super.prepareConnect();
+        wireBytesRecorded = 0;
+    }
+
     @OnWebSocketMessage
     public void onMessage(final String message) {
         LOGGER.debug("Received from server: {}", message);
+        final FrameJournal frameJournal = journal;
+        if (frameJournal != null) {
+            try {
+                // the journal takes the time itself, so that the times of devices sharing it never decrease
+                frameJournal.append(source, message);
+            } catch (final IOException e) {
+                LOGGER.error("Could not write frame to journal", e);
+            }
+        }
+        final ClientMetrics clientMetrics = metrics;
+        if (clientMetrics != null) {
+            clientMetrics.recordFrame(message);
+            recordWireBytes(clientMetrics);
+        }
+        final EventWatermark eventWatermark = watermark;
+        if (eventWatermark != null && !eventWatermark.accept(message)) {
+            if (clientMetrics != null) {
+                clientMetrics.recordDuplicate();
+            }
+            return;
+        }
         for (final WebSocketListener listener : listeners) {
             listener.onMessage(message);
         }
     }
 
+    /**
+     * Handles a message received as a stream. RFID observation and move events are handed to the EPC stream listener;
+     * other messages are handled as if received as a string.
+     */
+    public void onMessage(final Reader reader) throws IOException {
+        final EpcStreamListener listener = epcStreamListener;
+        if (listener == null) {
+            onMessage(readFully(reader));
+            return;
+        }
+        final ClientMetrics clientMetrics = metrics;
+        final CountingReader counting = new CountingReader(reader);
+        synchronized (streamLock) {
+            final long start = System.nanoTime();
+            final String message;
+            try {
+                message = decoder.decode(counting, listener);
+            } catch (final MessageParsingException e) {
+                if (clientMetrics != null) {
+                    clientMetrics.recordFrame(counting.getCount());
+                    clientMetrics.recordParseFailure();
+                }
+                LOGGER.info("The incoming message could not be parsed.");
+                endAbortedEvent(listener);
+                drain(reader);
+                return;
+            } catch (final IOException e) {
+                endAbortedEvent(listener);
+                throw e;
+            }
+            if (message != null) {
+                onMessage(message);
+                return;
+            }
+
+            final Event event = decoder.getStreamedEvent();
+            if (clientMetrics != null) {
+                clientMetrics.recordFrame(counting.getCount());
+                recordWireBytes(clientMetrics);
+                clientMetrics.recordEvent(event.getType(), counting.getCount(), System.nanoTime() - start);
+            }
+            final EventWatermark eventWatermark = watermark;
+            final boolean duplicate = eventWatermark != null && !eventWatermark.accept(event.getId(), event.getTime());
+            if (duplicate && clientMetrics != null) {
+                clientMetrics.recordDuplicate();
+            } else if (clientMetrics != null) {
+                recordLag(clientMetrics, event);
+            }
+            listener.onEventEnd(event, duplicate);
+        }
+    }
+
+    /**
+     * Records the lag of a streamed event, as {@link RenosApiListener} does for the events it decodes.
+     */
+    private void recordLag(final ClientMetrics clientMetrics, final Event event) {
+        if (event.getTime() == null) {
+            return;
+        }
+        try {
+            final long eventMillis = timestamps.toEpochMillis(event.getTime());
+            clientMetrics.recordLag(event.getType(), System.currentTimeMillis() - eventMillis);
+        } catch (final DateTimeParseException e) {
+            // no lag without a valid time
+        }
+    }
+
+    private void endAbortedEvent(final EpcStreamListener listener) {
+        if (decoder.isEventStarted()) {
+            listener.onEventEnd(null, false);
+        }
+    }
+
+    private static String readFully(final Reader reader) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads what is left of a message, so that Jetty resumes reading from the connection.
+     */
+    private static void drain(final Reader reader) throws IOException {
+        final char[] buffer = new char[READ_BUFFER_SIZE];
+        while (reader.read(buffer) >= 0) {
+            // discard
+        }
+    }
+
+    private void recordWireBytes(final ClientMetrics clientMetrics) {
+        final long wireBytes = getWireBytesIn();
+        if (wireBytes > wireBytesRecorded) {
+            clientMetrics.recordWireBytes(wireBytes - wireBytesRecorded);
+            wireBytesRecorded = wireBytes;
+        }
+    }
+
+    /**
+     * Counts the characters read, which equal the bytes of the ASCII JSON of Renos.
+     */
+    private static final class CountingReader extends FilterReader {
+
+        private long count;
+
+        CountingReader(final Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int c = super.read();
+            if (c >= 0) {
+                count++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
     @Override
     public void onError(final Throwable e) {
         if ((e instanceof ConnectException) || (e instanceof SocketTimeoutException)) {
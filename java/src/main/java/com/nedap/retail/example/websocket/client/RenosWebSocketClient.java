@@ -1,9 +1,18 @@
 package com.nedap.retail.example.websocket.client;
 
+import com.nedap.retail.example.journal.FrameJournal;
+import com.nedap.retail.example.metrics.ClientMetrics;
+import com.nedap.retail.example.rfid.EpcDeduplicator;
+import com.nedap.retail.example.sink.EventSink;
+import com.nedap.retail.example.topology.TopologyHolder;
 import com.nedap.retail.renos.api.v2.ws.MessageParser;
 import com.nedap.retail.renos.api.v2.ws.message.Heartbeat;
 import com.nedap.retail.renos.api.v2.ws.message.Authenticate;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
 import com.nedap.retail.renos.api.v2.ws.message.Subscribe;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.UpgradeException;
 import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
 import org.eclipse.jetty.websocket.client.WebSocketClient;
 import org.slf4j.Logger;
@@ -12,39 +21,90 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class RenosWebSocketClient extends WebSocketClient {
+public class RenosWebSocketClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(RenosWebSocketClient.class);
-    private static final int RECONNECT_DELAY = 5;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 60000;
 
     private static final String WS_PROTOCOL_PREFIX = "ws://";
     private static final String EVENTS_SOCKET_SUFFIX = "/api/v2/events";
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final WebSocketClient webSocketClient;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * True when the Jetty client and the scheduler are owned by someone else (e.g. a fleet), in which case they are
+     * neither started nor stopped by this client.
+     */
+    private final boolean sharedResources;
 
     private final RenosApiSocket eventsSocket;
+    private final RenosApiListener apiListener;
+    private volatile EventWatermark watermark;
+    /** Subscriptions sent on this client by reference, resent after every reconnect. */
+    private final Map<String, Subscribe> subscriptions = new LinkedHashMap<>();
+    private AsyncWebSocketListener asyncApiListener;
     private Future<?> reconnectFuture;
+    private final ReconnectBackoff backoff = new ReconnectBackoff(MIN_RECONNECT_DELAY_MILLIS,
+            MAX_RECONNECT_DELAY_MILLIS);
+    private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+    private ConnectionSupervisor supervisor;
+    private volatile ClientMetrics metrics;
+    private volatile PerMessageDeflateOffer compression;
+    /** Set when an upgrade offering compression was rejected, so that the next attempt goes without. */
+    private volatile boolean compressionDeclined;
 
+    private final String deviceUrl;
     private final String eventsSocketUrl;
 
     private String token;
 
     public RenosWebSocketClient(final String socketUrl) {
+        this(socketUrl, new WebSocketClient(), Executors.newScheduledThreadPool(1), false);
+    }
+
+    /**
+     * Creates a client which connects through a Jetty client and reconnects through a scheduler that are shared with
+     * other clients. The caller is responsible for starting and stopping both.
+     *
+     * @param socketUrl base URL of the device, e.g. http://localhost:8081
+     * @param webSocketClient shared, already started, Jetty WebSocket client
+     * @param scheduler shared scheduler used for reconnect attempts
+     */
+    public RenosWebSocketClient(final String socketUrl, final WebSocketClient webSocketClient,
+            final ScheduledExecutorService scheduler) {
+        this(socketUrl, webSocketClient, scheduler, true);
+    }
+
+    private RenosWebSocketClient(final String socketUrl, final WebSocketClient webSocketClient,
+            final ScheduledExecutorService scheduler, final boolean sharedResources) {
         if (socketUrl.endsWith("/")) {
             throw new IllegalArgumentException("The given URL should not have a trailing \"/\".");
         }
 
+        this.webSocketClient = webSocketClient;
+        this.scheduler = scheduler;
+        this.sharedResources = sharedResources;
+
         eventsSocket = new RenosApiSocket();
 
         // subscribe to WebSocket events from Renos WebSocket API
-        final RenosApiListener listener = new RenosApiListener(this);
-        eventsSocket.subscribe(listener);
+        apiListener = new RenosApiListener(this);
+        eventsSocket.subscribe(apiListener);
 
+        this.deviceUrl = socketUrl;
         this.eventsSocketUrl = WS_PROTOCOL_PREFIX + socketUrl.substring(7) + EVENTS_SOCKET_SUFFIX;
         LOG.info("Events socket URL {}", this.eventsSocketUrl);
     }
@@ -53,30 +113,333 @@ public class RenosWebSocketClient extends WebSocketClient {
         this.token = token;
     }
 
+    /**
+     * @return base URL of the device this client connects to
+     */
+    public String getDeviceUrl() {
+        return deviceUrl;
+    }
+
+    /**
+     * Registers an additional listener for messages received on the events socket.
+     *
+     * @param listener to register
+     */
+    public void addListener(final WebSocketListener listener) {
+        eventsSocket.subscribe(listener);
+    }
+
+    /**
+     * Registers a handler of decoded events of one type, e.g.
+     * {@code on(EventType.RFID_MOVE, RfidMoveEvent.class, handler)}. Handlers share the event decoded by the default
+     * listener, so every frame is decoded once. They are called on the receiving thread, or on a consumer thread once
+     * {@link #enableAsyncDelivery(int, AsyncWebSocketListener.OverflowPolicy) asynchronous delivery} is enabled.
+     *
+     * @param type type of the events
+     * @param eventClass class the events are decoded into, or a superclass of it
+     * @param handler handler to call for every event of the type
+     * @throws IllegalArgumentException if events of the type are not decoded into the class
+     */
+    public <T extends Event> void on(final EventType type, final Class<T> eventClass,
+            final EventHandler<? super T> handler) {
+        apiListener.getHandlers().on(type, eventClass, handler);
+    }
+
+    /**
+     * Removes a handler registered with {@link #on(EventType, Class, EventHandler)}.
+     *
+     * @return true if it was registered
+     */
+    public boolean off(final EventType type, final EventHandler<?> handler) {
+        return apiListener.getHandlers().off(type, handler);
+    }
+
+    /**
+     * Suppresses EPCs in RFID observation and move events which were seen at the same group and aisle within the given
+     * window. At most {@link EpcDeduplicator#DEFAULT_MAX_ENTRIES} EPCs are tracked.
+     *
+     * @param windowMillis window in milliseconds, or 0 to disable de-duplication
+     */
+    public void setDeduplicationWindow(final long windowMillis) {
+        setDeduplicationWindow(windowMillis, EpcDeduplicator.DEFAULT_MAX_ENTRIES, null);
+    }
+
+    /**
+     * Suppresses EPCs in RFID observation and move events which were seen at the same group and aisle within the given
+     * window.
+     *
+     * @param windowMillis window in milliseconds, or 0 to disable de-duplication
+     * @param maxEntries maximum number of EPCs tracked; when reached, new EPCs are passed without tracking
+     * @param expiryListener notified with the first and last sighting of an EPC when it leaves the window, may be null
+     */
+    public void setDeduplicationWindow(final long windowMillis, final int maxEntries,
+            final EpcDeduplicator.ExpiryListener expiryListener) {
+        apiListener.setDeduplicator(windowMillis > 0
+                ? new EpcDeduplicator(windowMillis, maxEntries, System::currentTimeMillis, expiryListener) : null);
+    }
+
+    /**
+     * Adds the names of groups, units and aisles to the events logged by the default listener.
+     *
+     * @param topology topology of the device, or null to log ids only
+     */
+    public void setTopology(final TopologyHolder topology) {
+        apiListener.setTopology(topology);
+    }
+
+    /**
+     * Hands the events received to a sink instead of logging them. The sink is not closed by this client.
+     *
+     * @param sink to hand events to
+     */
+    public void addSink(final EventSink sink) {
+        apiListener.addSink(sink);
+    }
+
+    /**
+     * Hands the EPCs of RFID observation and move events to a listener one by one while the frame is being read,
+     * instead of decoding the frame as a whole, from the next connect on. These events then no longer reach the other
+     * listeners, handlers, sinks and journal; all other messages still do. Duplicate events are reported to the
+     * listener rather than dropped, as their EPCs are handed over before the id of the event is known.
+     *
+     * @param listener to hand EPCs to, or null to decode every frame as a whole
+     */
+    public void setEpcStreamListener(final EpcStreamListener listener) {
+        eventsSocket.setEpcStreamListener(listener);
+    }
+
+    /**
+     * Writes every frame received on the events socket to a journal, tagged with the device URL.
+     *
+     * @param journal journal to write to, or null to stop journaling
+     */
+    public void setJournal(final FrameJournal journal) {
+        eventsSocket.setJournal(journal, deviceUrl);
+    }
+
+    /**
+     * Records metrics of the frames received, their handling by the default listener, and reconnects.
+     *
+     * @param metrics metrics to record in, or null to stop recording
+     */
+    public void setMetrics(final ClientMetrics metrics) {
+        this.metrics = metrics;
+        eventsSocket.setMetrics(metrics);
+        apiListener.setMetrics(metrics);
+    }
+
+    /**
+     * Offers the permessage-deflate extension when connecting, from the next connect on. A device which does not
+     * support it answers without it and the connection is uncompressed; if the device rejects the upgrade altogether,
+     * the next attempt is made without the offer.
+     *
+     * @param offer extension parameters to offer, or null to connect uncompressed
+     */
+    public void setCompression(final PerMessageDeflateOffer offer) {
+        this.compression = offer;
+        this.compressionDeclined = false;
+    }
+
+    /**
+     * @return true if the current connection is compressed
+     */
+    public boolean isCompressed() {
+        return eventsSocket.isNegotiated(PerMessageDeflateOffer.EXTENSION_NAME);
+    }
+
+    /**
+     * Resends the subscriptions after a reconnect including the events since the newest event received, and drops the
+     * events of that overlap which were received before. This reads the top-level keys of every frame once more on
+     * the read thread, to find the id and time of events. Sending a subscription which includes events since a time
+     * enables it as well.
+     *
+     * @return the watermark, which tracks the newest event received
+     */
+    public synchronized EventWatermark enableResume() {
+        if (watermark == null) {
+            watermark = new EventWatermark();
+            eventsSocket.setWatermark(watermark);
+        }
+        return watermark;
+    }
+
+    /**
+     * Moves handling of messages by the default listener off the WebSocket read thread, so that slow handling does
+     * not stall reading from the device.
+     *
+     * @param capacity number of messages that can be buffered
+     * @param policy what to do when the buffer is full
+     * @return the asynchronous listener, which exposes queue depth and drop counts
+     */
+    public AsyncWebSocketListener enableAsyncDelivery(final int capacity,
+            final AsyncWebSocketListener.OverflowPolicy policy) {
+        if (asyncApiListener == null) {
+            asyncApiListener = new AsyncWebSocketListener(apiListener, capacity, policy);
+            eventsSocket.subscribe(asyncApiListener);
+            eventsSocket.unsubscribe(apiListener);
+        }
+        return asyncApiListener;
+    }
+
+    /**
+     * Sends heartbeats periodically and reconnects when no frame is received after a number of them, or when the
+     * connection was closed without being asked to.
+     *
+     * @param heartbeatIntervalMillis time between heartbeats
+     * @param maxMissedHeartbeats number of heartbeats without any frame received after which the connection is dead
+     * @return the supervisor, which exposes the round-trip time of heartbeats
+     */
+    public synchronized ConnectionSupervisor enableSupervision(final long heartbeatIntervalMillis,
+            final int maxMissedHeartbeats) {
+        if (supervisor == null) {
+            supervisor = new ConnectionSupervisor(this, heartbeatIntervalMillis, maxMissedHeartbeats);
+            eventsSocket.subscribe(supervisor);
+            supervisor.start(scheduler);
+        }
+        return supervisor;
+    }
+
+    public ConnectionState getConnectionState() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return eventsSocket.isConnected();
+    }
+
     /**
      * Start the client, try to connect to Renos WebSocket server and wait until connection is established.
-     * 
+     *
      * @throws Exception
      */
     public void run() throws Exception {
-        super.start();
+        if (!sharedResources) {
+            webSocketClient.start();
+        }
 
         // connect Renos v2 API events socket
-        connectToSocket(eventsSocketUrl, eventsSocket);
+        state = ConnectionState.CONNECTING;
+        final PerMessageDeflateOffer offer = currentOffer();
+        beginConnect(eventsSocket, offer);
+        eventsSocket.awaitConnect();
+        completeConnect(eventsSocket, offer, eventsSocket.isUpgradeRejected());
+        if (!eventsSocket.isConnected()) {
+            reconnect();
+        }
         LOG.info("Client started.");
     }
 
-    private void connectToSocket(final String url, final ClientWebSocket socket)
-            throws URISyntaxException, IOException, InterruptedException {
-        final URI renosUri = new URI(url);
+    /**
+     * Start the client and connect to Renos WebSocket server in the background, without waiting until the connection
+     * is established. A connection which cannot be established is retried like a lost one.
+     *
+     * @throws Exception if the client could not be started
+     */
+    public void runAsync() throws Exception {
+        if (!sharedResources) {
+            webSocketClient.start();
+        }
+        state = ConnectionState.CONNECTING;
+        connectAsync();
+    }
+
+    private PerMessageDeflateOffer currentOffer() {
+        return compressionDeclined ? null : compression;
+    }
+
+    private Future<Session> beginConnect(final ClientWebSocket socket, final PerMessageDeflateOffer offer)
+            throws URISyntaxException, IOException {
+        final URI renosUri = new URI(eventsSocketUrl);
         LOG.info("Connecting to {}", renosUri);
         final ClientUpgradeRequest request = new ClientUpgradeRequest();
+        if (offer != null) {
+            request.addExtensions(offer.toExtensionConfig());
+        }
+
+        socket.prepareConnect();
+        return webSocketClient.connect(socket.getEndpoint(), renosUri, request);
+    }
+
+    /**
+     * Connects without blocking the calling thread, so that many clients can share a few scheduler threads. Jetty
+     * completes the connect on one of its own threads.
+     */
+    private void connectAsync() {
+        final PerMessageDeflateOffer offer = currentOffer();
+        final Future<Session> future;
+        try {
+            future = beginConnect(eventsSocket, offer);
+        } catch (final URISyntaxException | IOException e) {
+            LOG.error("Could not connect to {}, reason {}", eventsSocketUrl, e.getMessage());
+            reconnect();
+            return;
+        }
+        if (future instanceof CompletableFuture) {
+            ((CompletableFuture<Session>) future).whenComplete((session, failure) -> {
+                final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                connectCompleted(offer, eventsSocket.isUpgradeRejected() || cause instanceof UpgradeException);
+            });
+        } else {
+            scheduler.execute(() -> {
+                try {
+                    eventsSocket.awaitConnect();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                connectCompleted(offer, eventsSocket.isUpgradeRejected());
+            });
+        }
+    }
+
+    private void connectCompleted(final PerMessageDeflateOffer offer, final boolean upgradeRejected) {
+        completeConnect(eventsSocket, offer, upgradeRejected);
+        if (!eventsSocket.isConnected()) {
+            reconnect();
+        }
+    }
 
-        this.connect(socket, renosUri, request);
-        socket.awaitConnect();
+    private void completeConnect(final ClientWebSocket socket, final PerMessageDeflateOffer offer,
+            final boolean upgradeRejected) {
         if (socket.isConnected()) {
+            final boolean compressed = socket.isNegotiated(PerMessageDeflateOffer.EXTENSION_NAME);
+            if (offer != null) {
+                LOG.info(compressed ? "Compression negotiated" : "Compression not supported by the device");
+            }
+            final ClientMetrics clientMetrics = metrics;
+            if (clientMetrics != null) {
+                clientMetrics.recordConnect(compressed);
+            }
             cancelReconnect();
+            state = ConnectionState.CONNECTED;
+            backoff.reset();
             authenticateIfNeeded();
+            resubscribe();
+        } else if (upgradeRejected && offer != null) {
+            LOG.warn("Upgrade offering {} rejected, next attempt without compression", offer);
+            compressionDeclined = true;
+        } else if (upgradeRejected && compressionDeclined) {
+            // rejected without the offer too, so the offer was not the cause
+            compressionDeclined = false;
+        }
+    }
+
+    /**
+     * Resends the active subscriptions. With resume enabled, they include the events since the newest event received
+     * before the connection was lost, and events received twice are dropped by the watermark.
+     */
+    private void resubscribe() {
+        final List<Subscribe> active;
+        synchronized (subscriptions) {
+            active = new ArrayList<>(subscriptions.values());
+        }
+        final EventWatermark eventWatermark = watermark;
+        final String newestTime = eventWatermark != null ? eventWatermark.getNewestTime() : null;
+        for (final Subscribe subscribe : active) {
+            final String since = newestTime != null ? newestTime : subscribe.getIncludeEventsSince();
+            LOG.info("Resubscribing {} including events since {}", subscribe.getReference(), since);
+            final List<EventType> eventTypes = subscribe.getEventTypes();
+            eventsSocket.sendMessage(MessageParser.toJson(new Subscribe(subscribe.getReference(), since,
+                    eventTypes != null ? eventTypes.toArray(new EventType[0]) : new EventType[0])));
         }
     }
 
@@ -89,32 +452,78 @@ public class RenosWebSocketClient extends WebSocketClient {
 
     public void disconnect() {
         LOG.info("Closing the connection");
+        synchronized (this) {
+            cancelReconnect();
+            if (state != ConnectionState.CLOSED) {
+                state = ConnectionState.DISCONNECTED;
+            }
+        }
         eventsSocket.close();
     }
 
     public void finish() {
         try {
+            synchronized (this) {
+                state = ConnectionState.CLOSED;
+                if (supervisor != null) {
+                    supervisor.stop();
+                }
+            }
             disconnect();
-            scheduler.shutdownNow();
-            super.stop();
+            if (asyncApiListener != null) {
+                asyncApiListener.close();
+            }
+            if (!sharedResources) {
+                scheduler.shutdownNow();
+                webSocketClient.stop();
+            }
         } catch (final Exception e) {
             LOG.error("There was an error while trying to stop the web socket client", e);
         }
     }
 
-    public void reconnect() {
+    /**
+     * Schedules an attempt to reconnect after a backoff delay, which grows with every failed attempt. Does nothing if
+     * an attempt is already pending or the client was finished.
+     */
+    public synchronized void reconnect() {
+        if (state == ConnectionState.RECONNECTING || state == ConnectionState.CLOSED) {
+            return;
+        }
         cancelReconnect();
-        LOG.info("Trying to reconnect to Renos WebSocket, wait {}s", RECONNECT_DELAY);
-        reconnectFuture = scheduler.schedule(() -> {
-            try {
-                connectToSocket(eventsSocketUrl, eventsSocket);
-            } catch (final URISyntaxException | IOException | InterruptedException e) {
-                LOG.error("Could not reconnect to {}, reason {}", eventsSocketUrl, e.getMessage());
+        state = ConnectionState.RECONNECTING;
+        final ClientMetrics clientMetrics = metrics;
+        if (clientMetrics != null) {
+            clientMetrics.recordReconnect();
+        }
+        final long delay = backoff.nextDelayMillis();
+        LOG.info("Trying to reconnect to Renos WebSocket, wait {}ms", delay);
+        reconnectFuture = scheduler.schedule(this::attemptReconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void attemptReconnect() {
+        synchronized (this) {
+            if (state != ConnectionState.RECONNECTING) {
+                return;
             }
-        }, RECONNECT_DELAY, TimeUnit.SECONDS);
+            state = ConnectionState.CONNECTING;
+        }
+        connectAsync();
+    }
+
+    /**
+     * Drops a connection that is known to be dead and reconnects.
+     */
+    void connectionLost() {
+        final ClientMetrics clientMetrics = metrics;
+        if (clientMetrics != null) {
+            clientMetrics.recordConnectionLost();
+        }
+        eventsSocket.abort();
+        reconnect();
     }
 
-    private void cancelReconnect() {
+    private synchronized void cancelReconnect() {
         if (reconnectFuture != null) {
             reconnectFuture.cancel(false);
             reconnectFuture = null;
@@ -125,7 +534,28 @@ public class RenosWebSocketClient extends WebSocketClient {
         eventsSocket.sendMessage(MessageParser.toJson(new Heartbeat()));
     }
 
+    /**
+     * Sends a subscription and remembers it, so that it is resent after a reconnect. A subscription with the same
+     * reference as an earlier one replaces it. A subscription which includes events since a time enables resume, see
+     * {@link #enableResume()}.
+     *
+     * @param subscribe subscription to send
+     */
     public void sendSubscription(final Subscribe subscribe) {
+        final String since = subscribe.getIncludeEventsSince();
+        if (since != null && !since.isEmpty()) {
+            enableResume();
+        }
+        synchronized (subscriptions) {
+            subscriptions.put(subscribe.getReference(), subscribe);
+        }
         eventsSocket.sendMessage(MessageParser.toJson(subscribe));
     }
+
+    /**
+     * @return watermark of the events received by this client, or null if resume is not enabled
+     */
+    public EventWatermark getWatermark() {
+        return watermark;
+    }
 }
@@ -0,0 +1,262 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * First-in first-out overflow storage for messages on local disk. Messages are stored length-prefixed in segment
+ * files of a limited size; a segment is removed as soon as all its messages have been read back, so the disk space
+ * used shrinks while messages are read even if new ones keep coming. The total size of the segments is capped.
+ * <p>
+ * One thread may append while another reads: appending and reading each have their own lock, and only the
+ * bookkeeping of segments is shared.
+ */
+final class SpillFile implements Closeable {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    // lock order: readLock, then writeLock, then this
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+
+    // guarded by writeLock
+    private DataOutputStream out;
+    private Segment writeSegment;
+
+    // guarded by readLock
+    private DataInputStream in;
+    private Segment readSegment;
+    private long readPosition;
+
+    // guarded by this
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long pending;
+    private long bytes;
+
+    /**
+     * @param directory directory to create segment files in
+     * @param segmentBytes size after which a new segment is started
+     * @param maxBytes maximum size of all segments together
+     */
+    SpillFile(final Path directory, final long segmentBytes, final long maxBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return true if the message was stored, false if there was no room for it
+     */
+    boolean append(final String message) throws IOException {
+        final byte[] encoded = message.getBytes(StandardCharsets.UTF_8);
+        final long length = LENGTH_BYTES + encoded.length;
+        synchronized (writeLock) {
+            synchronized (this) {
+                if (bytes + length > maxBytes) {
+                    return false;
+                }
+            }
+            if (out == null || writeSegment.written >= segmentBytes) {
+                roll();
+            }
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            synchronized (this) {
+                writeSegment.written += length;
+                bytes += length;
+                pending++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Seals the segment being written and starts a new one. Must hold writeLock.
+     */
+    private void roll() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            synchronized (this) {
+                writeSegment.flushed = writeSegment.written;
+                writeSegment.sealed = true;
+            }
+        }
+        final Segment segment = new Segment(Files.createTempFile(directory, "renos-spill-", ".bin"));
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment.path)));
+        writeSegment = segment;
+        synchronized (this) {
+            segments.addLast(segment);
+        }
+    }
+
+    /**
+     * @return the oldest message, or null if there are none
+     */
+    String poll() throws IOException {
+        synchronized (readLock) {
+            while (true) {
+                final Segment segment;
+                synchronized (this) {
+                    if (pending == 0) {
+                        return null;
+                    }
+                    segment = segments.peekFirst();
+                }
+                if (segment != readSegment) {
+                    closeInput();
+                    in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)));
+                    readSegment = segment;
+                    readPosition = 0;
+                }
+                final boolean sealed;
+                final long readable;
+                synchronized (this) {
+                    sealed = segment.sealed;
+                    readable = segment.flushed;
+                }
+                if (readPosition < readable || !sealed && flush(segment) > readPosition) {
+                    return read();
+                }
+                if (sealed) {
+                    // every message of the segment has been read
+                    remove(segment);
+                } else {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the messages written to a segment readable. Must hold readLock.
+     *
+     * @return number of bytes of the segment that can be read
+     */
+    private long flush(final Segment segment) throws IOException {
+        synchronized (writeLock) {
+            if (segment == writeSegment && out != null) {
+                out.flush();
+            }
+            synchronized (this) {
+                segment.flushed = segment.written;
+                return segment.flushed;
+            }
+        }
+    }
+
+    /**
+     * Reads the next message of the current segment. Must hold readLock.
+     */
+    private String read() throws IOException {
+        final byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        readPosition += LENGTH_BYTES + encoded.length;
+        synchronized (this) {
+            pending--;
+        }
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes a sealed segment which has been read completely. Must hold readLock.
+     */
+    private void remove(final Segment segment) throws IOException {
+        closeInput();
+        synchronized (this) {
+            segments.removeFirst();
+            bytes -= segment.written;
+        }
+        Files.deleteIfExists(segment.path);
+    }
+
+    private void closeInput() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+        readSegment = null;
+    }
+
+    synchronized boolean isEmpty() {
+        return pending == 0;
+    }
+
+    /**
+     * @return number of messages stored
+     */
+    synchronized long size() {
+        return pending;
+    }
+
+    /**
+     * @return size of the segments on disk
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Removes all segments, including the messages not read yet.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (readLock) {
+            synchronized (writeLock) {
+                IOException failure = null;
+                try {
+                    closeInput();
+                    if (out != null) {
+                        out.close();
+                    }
+                } catch (final IOException e) {
+                    failure = e;
+                }
+                out = null;
+                writeSegment = null;
+                synchronized (this) {
+                    for (final Segment segment : segments) {
+                        try {
+                            Files.deleteIfExists(segment.path);
+                        } catch (final IOException e) {
+                            failure = e;
+                        }
+                    }
+                    segments.clear();
+                    pending = 0;
+                    bytes = 0;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        /** Bytes appended, guarded by the spill file. */
+        private long written;
+        /** Bytes which have reached the file and can be read, guarded by the spill file. */
+        private long flushed;
+        /** Set when no more messages are appended, guarded by the spill file. */
+        private boolean sealed;
+
+        Segment(final Path path) {
+            this.path = path;
+        }
+    }
+}
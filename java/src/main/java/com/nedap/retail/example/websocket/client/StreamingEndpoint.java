@@ -0,0 +1,51 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+/**
+ * Endpoint through which a {@link RenosApiSocket} receives text messages as a stream instead of as a string. Jetty
+ * takes the way messages are received from the annotations of the endpoint, hence a separate class. Jetty stops
+ * reading from the connection until the stream is consumed, so a message is never held as a whole; Jetty does buffer
+ * the bytes of each WebSocket frame it consists of.
+ */
+@WebSocket
+public class StreamingEndpoint {
+
+    /** Messages are not held as a whole, so they can be far larger than the default 64 KB of Jetty. */
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    private final RenosApiSocket socket;
+
+    StreamingEndpoint(final RenosApiSocket socket) {
+        this.socket = socket;
+    }
+
+    @OnWebSocketConnect
+    public void onConnect(final Session session) {
+        session.getPolicy().setMaxTextMessageSize(MAX_MESSAGE_SIZE);
+        socket.onConnect(session);
+    }
+
+    @OnWebSocketClose
+    public void onClose(final int statusCode, final String reason) {
+        socket.onClose(statusCode, reason);
+    }
+
+    @OnWebSocketError
+    public void onError(final Throwable e) {
+        socket.onError(e);
+    }
+
+    @OnWebSocketMessage
+    public void onMessage(final Reader reader) throws IOException {
+        socket.onMessage(reader);
+    }
+}
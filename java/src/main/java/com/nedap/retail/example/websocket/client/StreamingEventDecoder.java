@@ -0,0 +1,188 @@
+package com.nedap.retail.example.websocket.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.nedap.retail.example.rest.MessageParsingException;
+import com.nedap.retail.renos.api.v2.ws.message.Epc;
+import com.nedap.retail.renos.api.v2.ws.message.Event;
+import com.nedap.retail.renos.api.v2.ws.message.EventType;
+import com.nedap.retail.renos.json.JsonMapper;
+
+/**
+ * Decodes messages while they are being read. The EPC list of an RFID observation or move event is handed to an
+ * {@link EpcStreamListener} EPC by EPC, in one reused {@link Epc}; all other top-level fields are collected and
+ * decoded at the end, which is cheap as they are small. A message which is not such an event, or of which the EPC
+ * list comes before the event type, is collected as a whole and returned for the usual handling.
+ * <p>
+ * Not thread-safe: one instance per connection, used by one message at a time.
+ */
+final class StreamingEventDecoder {
+
+    private static final String EVENT_KEY = "event";
+    private static final String EPC_LIST_KEY = "epc_list";
+
+    /** EAS statuses by name as sent, unknown names decoding to null like they do for Gson. */
+    private static final Map<String, Epc.EasStatus> EAS_STATUSES = new HashMap<>();
+
+    static {
+        for (final Epc.EasStatus status : Epc.EasStatus.values()) {
+            EAS_STATUSES.put(status.name(), status);
+        }
+    }
+
+    private final Epc epc = new Epc();
+    private final List<Integer> units = new ArrayList<>();
+
+    private Event streamedEvent;
+    private boolean eventStarted;
+    private int epcCount;
+
+    /**
+     * Reads a message.
+     *
+     * @param reader the message
+     * @param listener receives the EPCs of RFID observation and move events
+     * @return the message as JSON if it was not streamed, or null if it was, see {@link #getStreamedEvent()}
+     * @throws MessageParsingException if the message is not valid JSON, or a streamed event could not be decoded
+     * @throws IOException if the message could not be read
+     */
+    String decode(final Reader reader, final EpcStreamListener listener) throws IOException {
+        streamedEvent = null;
+        eventStarted = false;
+        epcCount = 0;
+        final JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        final JsonObject rest = new JsonObject();
+        EventType type = null;
+        boolean streamed = false;
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                final String name = json.nextName();
+                if (EVENT_KEY.equals(name) && json.peek() == JsonToken.STRING) {
+                    final String label = json.nextString();
+                    rest.addProperty(name, label);
+                    type = MessageDispatcher.eventType(label);
+                } else if (EPC_LIST_KEY.equals(name) && isRfidRead(type) && json.peek() == JsonToken.BEGIN_ARRAY
+                        && !streamed) {
+                    streamed = true;
+                    eventStarted = true;
+                    listener.onEventStart(type);
+                    readEpcs(json, listener);
+                } else {
+                    rest.add(name, Streams.parse(json));
+                }
+            }
+            json.endObject();
+        } catch (final IllegalStateException | NumberFormatException | JsonParseException | MalformedJsonException
+                | EOFException e) {
+            throw new MessageParsingException("message");
+        }
+        if (!streamed) {
+            return rest.toString();
+        }
+        try {
+            streamedEvent = JsonMapper.fromJson(MessageDispatcher.eventClass(type), rest.toString());
+        } catch (final JsonParseException e) {
+            throw new MessageParsingException(EVENT_KEY);
+        }
+        if (streamedEvent == null) {
+            throw new MessageParsingException(EVENT_KEY);
+        }
+        return null;
+    }
+
+    /**
+     * @return the last event of which the EPCs were streamed, without its EPCs
+     */
+    Event getStreamedEvent() {
+        return streamedEvent;
+    }
+
+    /**
+     * @return true if the EPCs of the last message were handed to the listener, even if the message then failed
+     */
+    boolean isEventStarted() {
+        return eventStarted;
+    }
+
+    /**
+     * @return number of EPCs of the last streamed event
+     */
+    int getEpcCount() {
+        return epcCount;
+    }
+
+    private static boolean isRfidRead(final EventType type) {
+        return type == EventType.RFID_OBSERVATION || type == EventType.RFID_MOVE;
+    }
+
+    private void readEpcs(final JsonReader json, final EpcStreamListener listener) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            readEpc(json);
+            epcCount++;
+            listener.onEpc(epc);
+        }
+        json.endArray();
+    }
+
+    private void readEpc(final JsonReader json) throws IOException {
+        epc.setEpc(null);
+        epc.setTime(null);
+        epc.setEasStatus(null);
+        epc.setGroup(null);
+        epc.setUnits(null);
+        epc.setAisle(null);
+        units.clear();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "epc":
+                    epc.setEpc(json.nextString());
+                    break;
+                case "time":
+                    epc.setTime(json.nextString());
+                    break;
+                case "eas_status":
+                    epc.setEasStatus(EAS_STATUSES.get(json.nextString()));
+                    break;
+                case "group":
+                    epc.setGroup(json.nextString());
+                    break;
+                case "units":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        units.add(json.nextInt());
+                    }
+                    json.endArray();
+                    epc.setUnits(units);
+                    break;
+                case "aisle":
+                    epc.setAisle(json.nextInt());
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+}
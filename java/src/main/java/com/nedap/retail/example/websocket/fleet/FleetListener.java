@@ -0,0 +1,20 @@
+package com.nedap.retail.example.websocket.fleet;
+
+/**
+ * Listener used to handle events triggered on any of the WebSocket connections of a fleet.
+ */
+public interface FleetListener {
+
+    /**
+     * Triggered when a new message is received on WebSocket from a Renos device.
+     * @param deviceUrl base URL of the device which sent the message
+     * @param message which was received
+     */
+    void onMessage(String deviceUrl, String message);
+
+    /**
+     * Triggered when there is an error in WebSocket connection to a Renos device.
+     * @param deviceUrl base URL of the device
+     */
+    void onConnectionError(String deviceUrl);
+}
@@ -0,0 +1,242 @@
+package com.nedap.retail.example.websocket.fleet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nedap.retail.example.journal.FrameJournal;
+import com.nedap.retail.example.metrics.ClientMetrics;
+import com.nedap.retail.example.websocket.client.ConnectionState;
+import com.nedap.retail.example.websocket.client.PerMessageDeflateOffer;
+import com.nedap.retail.example.websocket.client.RenosWebSocketClient;
+import com.nedap.retail.example.websocket.client.WebSocketListener;
+import com.nedap.retail.renos.api.v2.ws.message.Subscribe;
+
+/**
+ * Keeps WebSocket connections to many Renos devices on one shared Jetty client, one shared thread pool and one shared
+ * reconnect scheduler. Devices can be added and removed at runtime; every message is tagged with its source device.
+ */
+public class RenosFleetClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenosFleetClient.class);
+
+    private static final int DEFAULT_MAX_THREADS = 32;
+    private static final int DEFAULT_SCHEDULER_THREADS = 4;
+
+    private final QueuedThreadPool executor;
+    private final HttpClient httpClient;
+    private final WebSocketClient webSocketClient;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, RenosWebSocketClient> devices = new ConcurrentHashMap<>();
+    private final List<FleetListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FrameJournal journal;
+    private volatile ClientMetrics metrics;
+    private volatile PerMessageDeflateOffer compression;
+    private volatile long heartbeatIntervalMillis;
+    private volatile int maxMissedHeartbeats;
+
+    public RenosFleetClient() {
+        this(DEFAULT_MAX_THREADS, DEFAULT_SCHEDULER_THREADS);
+    }
+
+    /**
+     * @param maxThreads maximum number of threads used for WebSocket I/O of all devices together
+     * @param schedulerThreads number of threads used for scheduling reconnects and heartbeats
+     */
+    public RenosFleetClient(final int maxThreads, final int schedulerThreads) {
+        executor = new QueuedThreadPool(maxThreads);
+        executor.setName("renos-fleet");
+        httpClient = new HttpClient();
+        httpClient.setExecutor(executor);
+        webSocketClient = new WebSocketClient(httpClient);
+        scheduler = Executors.newScheduledThreadPool(schedulerThreads);
+    }
+
+    public void addListener(final FleetListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Writes the frames of all devices, current and future, to one journal.
+     *
+     * @param journal journal to write to, or null to stop journaling
+     */
+    public void setJournal(final FrameJournal journal) {
+        this.journal = journal;
+        for (final RenosWebSocketClient client : devices.values()) {
+            client.setJournal(journal);
+        }
+    }
+
+    /**
+     * Records the metrics of all devices, current and future, in one instance.
+     *
+     * @param metrics metrics to record in, or null to stop recording
+     */
+    public void setMetrics(final ClientMetrics metrics) {
+        this.metrics = metrics;
+        for (final RenosWebSocketClient client : devices.values()) {
+            client.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Offers compression when connecting to devices added from now on, see
+     * {@link RenosWebSocketClient#setCompression(PerMessageDeflateOffer)}.
+     *
+     * @param offer extension parameters to offer, or null to connect uncompressed
+     */
+    public void setCompression(final PerMessageDeflateOffer offer) {
+        this.compression = offer;
+    }
+
+    /**
+     * Supervises the connections of all devices, current and future, with heartbeats, see
+     * {@link RenosWebSocketClient#enableSupervision(long, int)}.
+     *
+     * @param heartbeatIntervalMillis time between heartbeats
+     * @param maxMissedHeartbeats number of heartbeats without any frame received after which a connection is dead
+     */
+    public void enableSupervision(final long heartbeatIntervalMillis, final int maxMissedHeartbeats) {
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        for (final RenosWebSocketClient client : devices.values()) {
+            client.enableSupervision(heartbeatIntervalMillis, maxMissedHeartbeats);
+        }
+    }
+
+    /**
+     * Start the shared Jetty client. Devices can be added before or after starting.
+     *
+     * @throws Exception
+     */
+    public void start() throws Exception {
+        executor.start();
+        httpClient.start();
+        webSocketClient.start();
+        LOG.info("Fleet client started.");
+    }
+
+    /**
+     * Adds a device to the fleet and connects to it in the background.
+     *
+     * @param deviceUrl base URL of the device, e.g. http://10.0.0.12
+     * @param token authentication token, or null if authentication is disabled on the device
+     * @return the client of the device
+     */
+    public RenosWebSocketClient addDevice(final String deviceUrl, final String token) {
+        final RenosWebSocketClient client = new RenosWebSocketClient(deviceUrl, webSocketClient, scheduler);
+        if (devices.putIfAbsent(deviceUrl, client) != null) {
+            throw new IllegalArgumentException("Device " + deviceUrl + " is already part of the fleet.");
+        }
+        client.setToken(token);
+        client.addListener(new DeviceListener(deviceUrl));
+        client.setJournal(journal);
+        client.setMetrics(metrics);
+        client.setCompression(compression);
+        if (heartbeatIntervalMillis > 0) {
+            client.enableSupervision(heartbeatIntervalMillis, maxMissedHeartbeats);
+        }
+        try {
+            client.runAsync();
+        } catch (final Exception e) {
+            LOG.error("Could not connect to {}, reason {}", deviceUrl, e.getMessage());
+        }
+        return client;
+    }
+
+    /**
+     * Disconnects a device and removes it from the fleet.
+     *
+     * @param deviceUrl base URL of the device
+     */
+    public void removeDevice(final String deviceUrl) {
+        final RenosWebSocketClient client = devices.remove(deviceUrl);
+        if (client != null) {
+            client.finish();
+        }
+    }
+
+    public RenosWebSocketClient getDevice(final String deviceUrl) {
+        return devices.get(deviceUrl);
+    }
+
+    public Set<String> getDevices() {
+        return Collections.unmodifiableSet(devices.keySet());
+    }
+
+    /**
+     * @return connection state of every device in the fleet, by device URL
+     */
+    public Map<String, ConnectionState> getConnectionStates() {
+        final Map<String, ConnectionState> states = new HashMap<>();
+        for (final Map.Entry<String, RenosWebSocketClient> device : devices.entrySet()) {
+            states.put(device.getKey(), device.getValue().getConnectionState());
+        }
+        return states;
+    }
+
+    /**
+     * Sends the same subscription to every device in the fleet.
+     *
+     * @param subscribe subscription to send
+     */
+    public void sendSubscription(final Subscribe subscribe) {
+        for (final RenosWebSocketClient client : devices.values()) {
+            client.sendSubscription(subscribe);
+        }
+    }
+
+    public void finish() {
+        for (final String deviceUrl : devices.keySet()) {
+            removeDevice(deviceUrl);
+        }
+        try {
+            scheduler.shutdownNow();
+            webSocketClient.stop();
+            httpClient.stop();
+            executor.stop();
+        } catch (final Exception e) {
+            LOG.error("There was an error while trying to stop the fleet client", e);
+        }
+    }
+
+    /**
+     * Tags messages of a single device with its URL before handing them to the fleet listeners.
+     */
+    private class DeviceListener implements WebSocketListener {
+
+        private final String deviceUrl;
+
+        DeviceListener(final String deviceUrl) {
+            this.deviceUrl = deviceUrl;
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            for (final FleetListener listener : listeners) {
+                listener.onMessage(deviceUrl, message);
+            }
+        }
+
+        @Override
+        public void onConnectionError() {
+            for (final FleetListener listener : listeners) {
+                listener.onConnectionError(deviceUrl);
+            }
+        }
+    }
+}
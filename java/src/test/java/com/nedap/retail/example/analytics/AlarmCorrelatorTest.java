@@ -0,0 +1,108 @@
+package com.nedap.retail.example.analytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nedap.retail.renos.api.v2.ws.message.Event.Direction;
+import com.nedap.retail.renos.api.v2.ws.message.IrDirectionEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfAlarmEvent;
+import com.nedap.retail.renos.api.v2.ws.message.RfidAlarmEvent;
+
+public class AlarmCorrelatorTest {
+
+    private static final String DEVICE = "http://10.0.0.12";
+    private static final String GROUP = "entrance";
+    private static final long START = Instant.parse("2020-01-01T12:00:00Z").toEpochMilli();
+
+    private final List<AlarmCorrelation> correlations = new ArrayList<>();
+    private long now;
+    private AlarmCorrelator correlator;
+
+    @Before
+    public void setUp() {
+        now = START;
+        correlator = new AlarmCorrelator(5000, 2000, () -> now, correlations::add);
+    }
+
+    @Test
+    public void pairsRfAlarmWithLaterPassageThroughAisleOfItsUnit() {
+        final RfAlarmEvent alarm = new RfAlarmEvent("1", time(0), GROUP, 2, Direction.UNKNOWN);
+        final IrDirectionEvent passage = passage("2", time(1500), 2, 3);
+
+        correlator.accept(DEVICE, alarm);
+        assertTrue(correlations.isEmpty());
+        correlator.accept(DEVICE, passage);
+
+        assertEquals(1, correlations.size());
+        final AlarmCorrelation correlation = correlations.get(0);
+        assertSame(alarm, correlation.getAlarm());
+        assertSame(passage, correlation.getPassage());
+        assertTrue(correlation.isExit());
+        assertEquals(1500, correlation.getOffsetMillis());
+    }
+
+    @Test
+    public void pairsRfAlarmWithEarlierPassageThroughAisleOfItsUnit() {
+        final IrDirectionEvent passage = passage("1", time(0), 1, 2);
+        final RfAlarmEvent alarm = new RfAlarmEvent("2", time(800), GROUP, 2, Direction.UNKNOWN);
+
+        correlator.accept(DEVICE, passage);
+        correlator.accept(DEVICE, alarm);
+
+        assertEquals(1, correlations.size());
+        assertSame(passage, correlations.get(0).getPassage());
+        assertEquals(1, correlator.getMatchedCount());
+    }
+
+    @Test
+    public void reportsRfAlarmUnmatchedIfNobodyPassedItsUnit() {
+        final RfAlarmEvent alarm = new RfAlarmEvent("1", time(0), GROUP, 5, Direction.UNKNOWN);
+
+        correlator.accept(DEVICE, alarm);
+        correlator.accept(DEVICE, passage("2", time(1000), 2, 3));
+        assertTrue(correlations.isEmpty());
+
+        now += 10000;
+        correlator.expire();
+
+        assertEquals(1, correlations.size());
+        assertSame(alarm, correlations.get(0).getAlarm());
+        assertFalse(correlations.get(0).isMatched());
+    }
+
+    @Test
+    public void pairsRfidAlarmByAisle() {
+        final RfidAlarmEvent alarm = new RfidAlarmEvent("1", "3034257BF400B7800004CB2F", time(0), GROUP,
+                Arrays.asList(3, 4), 3, Direction.OUT);
+
+        correlator.accept(DEVICE, alarm);
+        // shares unit 3, but is another aisle
+        correlator.accept(DEVICE, passage("2", time(200), 2, 3));
+        assertTrue(correlations.isEmpty());
+        correlator.accept(DEVICE, passage("3", time(400), 3, 4));
+
+        assertEquals(1, correlations.size());
+        assertEquals("3", correlations.get(0).getPassage().getId());
+    }
+
+    /**
+     * @return passage through the aisle between two units, numbered after the first unit
+     */
+    private static IrDirectionEvent passage(final String id, final String time, final int unit, final int otherUnit) {
+        return new IrDirectionEvent(id, time, GROUP, Arrays.asList(unit, otherUnit), unit, Direction.OUT);
+    }
+
+    private static String time(final long offsetMillis) {
+        return Instant.ofEpochMilli(START + offsetMillis).toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.nedap.retail.example.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import org.junit.Test;
+
+public class TimestampDecoderTest {
+
+    private static final String[] VALID = {
+            "2020-01-01T12:00:00.000+02:00",
+            "2020-01-01T12:00:00.123Z",
+            "2020-01-01T12:00:00Z",
+            "2020-01-01T12:59:59.999999999-05:30",
+            "2020-01-01T12:00:00.1+00:00",
+            "2020-02-29T23:59:59.5+17:59",
+            "2019-12-31T23:00:00.000-01:00",
+            "1970-01-01T00:00:00Z",
+            "1969-12-31T23:59:59.999Z",
+            // not in the usual shape, handed to the formatter
+            "2020-01-01T12:00Z",
+            "2020-01-01t12:00:00Z",
+            "2020-01-01T12:00:00+18:00",
+            "2020-01-01T12:00:00.123+02:00:30",
+            "2020-01-01T12:00:00.Z",
+            "2020-01-01T12:00:00+02",
+    };
+
+    private static final String[] MALFORMED = {
+            "2020-01-01T12:00:00.123",
+            "2020-01-01T12:00:00",
+            "2020-01-01T12:00:00.",
+            "2020-01-01T12:00:00.1234567890Z",
+            "2020-01-01T12:00:00 Z",
+            "2020-01-01T12:60:00Z",
+            "2020-01-01T12:00:60Z",
+            "2020-01-01T24:00:00Z",
+            "2020-02-30T12:00:00Z",
+            "2020-13-01T12:00:00Z",
+            "2020-01-01 12:00:00Z",
+            "2020-01-01T12:00:00+19:00",
+            "2020-01-01T12:00:00.123+02:60",
+            "2020",
+            "",
+    };
+
+    @Test
+    public void decodesValidTimesLikeTheFormatter() {
+        final TimestampDecoder shared = new TimestampDecoder();
+        for (final String time : VALID) {
+            final Instant expected = Instant.from(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(time));
+            final long expectedNanos = expected.getEpochSecond() * 1000000000L + expected.getNano();
+            assertEquals(time, expected.toEpochMilli(), new TimestampDecoder().toEpochMillis(time));
+            assertEquals(time, expectedNanos, new TimestampDecoder().toEpochNanos(time));
+            // also with the hour of another time cached
+            assertEquals(time, expected.toEpochMilli(), shared.toEpochMillis(time));
+            assertEquals(time, expectedNanos, shared.toEpochNanos(time));
+        }
+    }
+
+    @Test
+    public void rejectsMalformedTimesLikeTheFormatter() {
+        final TimestampDecoder decoder = new TimestampDecoder();
+        for (final String time : MALFORMED) {
+            assertRejected(time, () -> DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(time));
+            assertRejected(time, () -> decoder.toEpochMillis(time));
+            assertRejected(time, () -> decoder.toEpochNanos(time));
+        }
+    }
+
+    private static void assertRejected(final String time, final Runnable parse) {
+        try {
+            parse.run();
+            fail("Accepted " + time);
+        } catch (final DateTimeParseException e) {
+            // as expected
+        }
+    }
+}